@@ -1,4 +1,4 @@
-import React, { useState, useEffect } from "react";
+import React, { useState, useEffect, useRef } from "react";
 import {
   X,
   MessageSquare,
@@ -12,6 +12,7 @@ import { ScrollArea } from "@/components/ui/scroll-area";
 import { Badge } from "@/components/ui/badge";
 import { ConversationDTO, MessageDTO } from "@/lib/type";
 import { messagingApi } from "@/lib/messaging-api";
+import { subscribeToStream } from "@/lib/event-stream";
 import { useAuth } from "@/contexts/AuthContext";
 
 interface MessagingModalProps {
@@ -33,6 +34,9 @@ const MessagingModal: React.FC<MessagingModalProps> = ({
   const [newMessage, setNewMessage] = useState("");
   const [loading, setLoading] = useState(false);
   const [view, setView] = useState<"list" | "chat">("list");
+  // The stream handlers outlive renders, so they read the open conversation from here.
+  const openConversationId = useRef<string | null>(null);
+  openConversationId.current = selectedConversation?.id ?? null;
 
   useEffect(() => {
     if (isOpen) {
@@ -45,6 +49,68 @@ const MessagingModal: React.FC<MessagingModalProps> = ({
     }
   }, [isOpen, initialConversation]);
 
+  useEffect(() => {
+    if (!isOpen) return;
+    return subscribeToStream("/messages/stream", {
+      message: (message: MessageDTO) => {
+        const isOpenConversation =
+          message.conversationId === openConversationId.current;
+        const fromOther = message.sender.id !== user?.id;
+        if (isOpenConversation) {
+          appendMessage(message);
+          if (fromOther) {
+            messagingApi.markMessagesAsRead(message.conversationId).catch(() => {});
+          }
+        }
+        setConversations((prev) =>
+          prev.map((conversation) =>
+            conversation.id === message.conversationId
+              ? {
+                  ...conversation,
+                  lastMessage: message.content,
+                  lastMessageAt: message.sentAt,
+                  unreadMessageCount:
+                    fromOther && !isOpenConversation
+                      ? conversation.unreadMessageCount + 1
+                      : conversation.unreadMessageCount,
+                }
+              : conversation
+          )
+        );
+      },
+      read: (receipt: { conversationId: string; readerId: string }) => {
+        if (receipt.readerId !== user?.id) return;
+        setConversations((prev) =>
+          prev.map((conversation) =>
+            conversation.id === receipt.conversationId
+              ? { ...conversation, unreadMessageCount: 0 }
+              : conversation
+          )
+        );
+      },
+      "request-accepted": () => loadData(),
+      "request-rejected": () => loadData(),
+      "request-pending": () => loadData(),
+      resync: () => {
+        loadData();
+        if (openConversationId.current) {
+          messagingApi
+            .getConversationMessages(openConversationId.current)
+            .then((messagesData) => setMessages(messagesData.reverse()))
+            .catch(() => {});
+        }
+      },
+    });
+  }, [isOpen, user?.id]);
+
+  // The sender gets their own message back over the stream too.
+  const appendMessage = (message: MessageDTO) =>
+    setMessages((prev) =>
+      prev.some((existing) => existing.id === message.id)
+        ? prev
+        : [...prev, message]
+    );
+
   const loadData = async () => {
     setLoading(true);
     try {
@@ -78,7 +144,7 @@ const MessagingModal: React.FC<MessagingModalProps> = ({
       const message = await messagingApi.sendMessage(selectedConversation.id, {
         content: newMessage.trim(),
       });
-      setMessages((prev) => [...prev, message]);
+      appendMessage(message);
       setNewMessage("");
     } catch (error) {
       console.error("Failed to send message:", error);
@@ -0,0 +1,87 @@
+const BASE_URL = "http://localhost:8081/api";
+
+const RETRY_MIN_MS = 1000;
+const RETRY_MAX_MS = 30000;
+
+export type StreamHandlers = Record<string, (data: any) => void>;
+
+/*
+ * Reads a server-sent event stream with fetch rather than EventSource, because
+ * EventSource cannot send the Authorization header the API expects. Reconnects with
+ * backoff until the returned function is called; each reconnect is announced as a
+ * "resync" event, since anything sent while disconnected was missed.
+ */
+export const subscribeToStream = (
+  path: string,
+  handlers: StreamHandlers
+): (() => void) => {
+  const controller = new AbortController();
+  let retryMs = RETRY_MIN_MS;
+
+  const dispatch = (name: string, data: string) => {
+    const handler = handlers[name];
+    if (!handler) return;
+    try {
+      handler(JSON.parse(data));
+    } catch {
+      handler(data);
+    }
+  };
+
+  const read = async () => {
+    const response = await fetch(`${BASE_URL}${path}`, {
+      headers: {
+        Authorization: `Bearer ${localStorage.getItem("token")}`,
+        Accept: "text/event-stream",
+      },
+      signal: controller.signal,
+    });
+    if (!response.ok || !response.body) {
+      throw new Error(`Stream ${path} failed with ${response.status}`);
+    }
+    retryMs = RETRY_MIN_MS;
+
+    const reader = response.body.pipeThrough(new TextDecoderStream()).getReader();
+    let buffer = "";
+    let name = "message";
+    let data: string[] = [];
+    for (;;) {
+      const { value, done } = await reader.read();
+      if (done) return;
+      buffer += value;
+      const lines = buffer.split(/\r\n|\r|\n/);
+      buffer = lines.pop() ?? "";
+      for (const line of lines) {
+        if (line === "") {
+          if (data.length > 0) dispatch(name, data.join("\n"));
+          name = "message";
+          data = [];
+        } else if (line.startsWith("event:")) {
+          name = line.slice(6).trim();
+        } else if (line.startsWith("data:")) {
+          data.push(line.slice(5).replace(/^ /, ""));
+        }
+        // Lines starting with ":" are heartbeats.
+      }
+    }
+  };
+
+  const run = async () => {
+    let connected = false;
+    while (!controller.signal.aborted) {
+      try {
+        if (connected) dispatch("resync", "resync");
+        connected = true;
+        await read();
+      } catch (error) {
+        if (controller.signal.aborted) return;
+        console.error(error);
+      }
+      await new Promise((resolve) => setTimeout(resolve, retryMs));
+      retryMs = Math.min(retryMs * 2, RETRY_MAX_MS);
+    }
+  };
+
+  run();
+  return () => controller.abort();
+};
@@ -35,6 +35,56 @@ export const messagingApi = {
       `${BASE_URL}/messages/conversations`,
       getAuthHeaders()
     );
+    return response.data.items;
+  },
+
+  async getUnreadCount(): Promise<{ unreadMessages: number; pendingRequests: number }> {
+    const response = await axios.get(
+      `${BASE_URL}/messages/unread-count`,
+      getAuthHeaders()
+    );
+    return response.data;
+  },
+
+  async searchMessages(
+    q: string,
+    cursor?: string,
+    limit = 20
+  ): Promise<{
+    items: {
+      message: MessageDTO;
+      snippet: string;
+      highlights: { start: number; end: number }[];
+    }[];
+    nextCursor: string | null;
+  }> {
+    const response = await axios.get(`${BASE_URL}/messages/search`, {
+      ...getAuthHeaders(),
+      params: { q, cursor, limit },
+    });
+    return response.data;
+  },
+
+  async sync(
+    since?: number,
+    timeoutMs = 0
+  ): Promise<{
+    token: number;
+    hasMore: boolean;
+    resync: boolean;
+    conversations: ConversationDTO[];
+    messages: MessageDTO[];
+    reads: {
+      conversationId: string;
+      readerId: string;
+      readUpTo: string;
+      readUpToMessageId: string | null;
+    }[];
+  }> {
+    const response = await axios.get(`${BASE_URL}/messages/sync`, {
+      ...getAuthHeaders(),
+      params: { since, timeoutMs },
+    });
     return response.data;
   },
 
@@ -60,7 +110,7 @@ export const messagingApi = {
       `${BASE_URL}/messages/requests/received`,
       getAuthHeaders()
     );
-    return response.data;
+    return response.data.items;
   },
 
   async getSentRequests(): Promise<ConversationDTO[]> {
@@ -68,7 +118,7 @@ export const messagingApi = {
       `${BASE_URL}/messages/requests/sent`,
       getAuthHeaders()
     );
-    return response.data;
+    return response.data.items;
   },
 
   async acceptMessageRequest(conversationId: string): Promise<void> {
@@ -101,14 +151,16 @@ export const messagingApi = {
 
   async getConversationMessages(
     conversationId: string,
-    page: number = 0,
+    before?: string,
     size: number = 50
   ): Promise<MessageDTO[]> {
+    const params = new URLSearchParams({ size: String(size) });
+    if (before) params.set("before", before);
     const response = await axios.get(
-      `${BASE_URL}/messages/conversations/${conversationId}?page=${page}&size=${size}`,
+      `${BASE_URL}/messages/conversations/${conversationId}?${params}`,
       getAuthHeaders()
     );
-    return response.data;
+    return response.data.items;
   },
 
   async markMessagesAsRead(conversationId: string): Promise<void> {
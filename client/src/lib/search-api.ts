@@ -30,5 +30,5 @@ export const searchBooks = async (query: string): Promise<Book[]> => {
 
 export const getUsersWhoHaveBook = async (bookId: string): Promise<User[]> => {
   const response = await axios.get(`${BASE_URL}/books/${bookId}/users`);
-  return response.data;
+  return response.data.items;
 };
\ No newline at end of file
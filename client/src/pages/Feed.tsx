@@ -9,6 +9,7 @@ import { ArrowLeftRight, RefreshCw, Book, RotateCcw } from "lucide-react";
 import axios from "axios";
 import MessageButton from "@/components/MessageButton";
 import { UserDTO } from "@/lib/type";
+import { subscribeToStream } from "@/lib/event-stream";
 
 interface Book {
   id: string;
@@ -44,7 +45,7 @@ const Feed: React.FC = () => {
           Authorization: `Bearer ${token}`,
         },
       });
-      setMatches(response.data);
+      setMatches(response.data.items);
     } catch (error) {
       toast({
         title: "Error loading feed",
@@ -60,6 +61,24 @@ const Feed: React.FC = () => {
     fetchFeed();
   }, []);
 
+  // New matches go on top until the next refresh ranks them.
+  useEffect(
+    () =>
+      subscribeToStream("/feed/stream", {
+        "match-added": (item: FeedMatch) =>
+          setMatches((prev) => [
+            item,
+            ...prev.filter((match) => match.user.id !== item.user.id),
+          ]),
+        "match-removed": (item: FeedMatch) =>
+          setMatches((prev) =>
+            prev.filter((match) => match.user.id !== item.user.id)
+          ),
+        resync: () => fetchFeed(),
+      }),
+    []
+  );
+
   const getInitials = (firstName: string, lastName: string) => {
     return `${firstName.charAt(0)}${lastName.charAt(0)}`.toUpperCase();
   };
@@ -0,0 +1,184 @@
+package com.shelfswap.cache;
+
+import com.shelfswap.dtos.CacheStats;
+import com.shelfswap.entities.Book;
+import com.shelfswap.events.BookCreatedEvent;
+import com.shelfswap.repositories.BookRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Read-through LRU cache of books by Open Library ID. Books never change once inserted,
+ * so present entries never expire; absent IDs are cached for a short while, and IDs the
+ * Bloom filter of every stored ID has never seen are answered without a query at all.
+ * The filter only knows books inserted through this process, so callers that would
+ * report a missing book use {@link #findStored}, which confirms an absence with the
+ * database. The filter is still rebuilt periodically to pick up books written by other
+ * processes, such as a dump ingestion.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookCatalogCache {
+    private final BookRepository bookRepository;
+
+    @Value("${shelfswap.books.cache.max-entries}")
+    private int maxEntries;
+
+    @Value("${shelfswap.books.cache.negative-ttl-ms}")
+    private long negativeTtlMs;
+
+    @Value("${shelfswap.books.bloom.expected-books}")
+    private long expectedBooks;
+
+    @Value("${shelfswap.books.bloom.false-positive-rate}")
+    private double falsePositiveRate;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private volatile BloomFilter knownIds;
+    // The filter being loaded, if any; created before its query so inserts committed during it are not missed.
+    private volatile BloomFilter loadingIds;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder shortCircuits = new LongAdder();
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(
+            initialDelayString = "${shelfswap.books.bloom.reload-ms}",
+            fixedDelayString = "${shelfswap.books.bloom.reload-ms}"
+    )
+    @Transactional(readOnly = true)
+    public synchronized void loadKnownIds() {
+        long start = System.currentTimeMillis();
+        long count = bookRepository.count();
+        BloomFilter filter = new BloomFilter(Math.max(expectedBooks, count * 2), falsePositiveRate);
+        loadingIds = filter;
+        try (Stream<String> ids = bookRepository.streamAllIds()) {
+            ids.forEach(filter::add);
+        }
+        knownIds = filter;
+        loadingIds = null;
+        log.info("Book ID filter loaded with {} books in {} ms", count, System.currentTimeMillis() - start);
+    }
+
+    public Optional<Book> find(String bookId) {
+        return find(bookId, false);
+    }
+
+    // Like find, but an absence the cache would answer on its own is confirmed against the
+    // database, since another node or the dump ingester may have stored the book since.
+    public Optional<Book> findStored(String bookId) {
+        return find(bookId, true);
+    }
+
+    public boolean exists(String bookId) {
+        return findStored(bookId).isPresent();
+    }
+
+    private Optional<Book> find(String bookId, boolean confirmAbsence) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(bookId);
+            if (entry != null && entry.book == null && now - entry.createdAt > negativeTtlMs) {
+                entries.remove(bookId);
+                evictions.increment();
+            } else if (entry != null && (entry.book != null || !confirmAbsence)) {
+                hits.increment();
+                return Optional.ofNullable(entry.book);
+            }
+        }
+
+        BloomFilter filter = knownIds;
+        if (!confirmAbsence && filter != null && !filter.mightContain(bookId)) {
+            shortCircuits.increment();
+            return Optional.empty();
+        }
+
+        misses.increment();
+        Optional<Book> book = bookRepository.findById(bookId);
+        if (book.isPresent()) {
+            remember(book.get());
+            return book;
+        }
+        synchronized (entries) {
+            // A negative result must not overwrite a book inserted while we were loading.
+            if (!entries.containsKey(bookId)) {
+                entries.put(bookId, new Entry(null, now));
+                evictOverflow();
+            }
+        }
+        return book;
+    }
+
+    @TransactionalEventListener
+    public void onBookCreated(BookCreatedEvent event) {
+        remember(event.getBook());
+    }
+
+    // Records a book known to be stored, e.g. after an insert found it already there.
+    public void remember(Book book) {
+        for (BloomFilter filter : new BloomFilter[]{loadingIds, knownIds}) {
+            if (filter != null) {
+                filter.add(book.getId());
+            }
+        }
+        synchronized (entries) {
+            Entry previous = entries.put(book.getId(), new Entry(book, System.currentTimeMillis()));
+            if (previous != null && previous.book == null) {
+                invalidations.increment();
+            }
+            evictOverflow();
+        }
+    }
+
+    public CacheStats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return CacheStats.builder()
+                .hits(hits.sum())
+                .misses(misses.sum())
+                .evictions(evictions.sum())
+                .invalidations(invalidations.sum())
+                .shortCircuits(shortCircuits.sum())
+                .size(size)
+                .build();
+    }
+
+    private void evictOverflow() {
+        Iterator<String> eldest = entries.keySet().iterator();
+        while (entries.size() > maxEntries && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    // A null book records that the ID is not in the catalog.
+    private static class Entry {
+        private final Book book;
+        private final long createdAt;
+
+        Entry(Book book, long createdAt) {
+            this.book = book;
+            this.createdAt = createdAt;
+        }
+    }
+}
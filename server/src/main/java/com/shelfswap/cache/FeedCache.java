@@ -0,0 +1,177 @@
+package com.shelfswap.cache;
+
+import com.shelfswap.dtos.CacheStats;
+import com.shelfswap.dtos.FeedPage;
+import com.shelfswap.events.ShelfBatchEvent;
+import com.shelfswap.events.ShelfChangeEvent;
+import com.shelfswap.index.SwapMatchIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Per-user cache of feed pages, bounded by user count (LRU) and by age. A shelf or
+ * wishlist change for a book only evicts the users who own or want that book.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FeedCache {
+    private final SwapMatchIndex swapMatchIndex;
+
+    @Value("${shelfswap.feed.cache.max-users}")
+    private int maxUsers;
+
+    @Value("${shelfswap.feed.cache.ttl-ms}")
+    private long ttlMs;
+
+    private final LinkedHashMap<UUID, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /*
+     * Users with a page being computed. Invalidating one of them bumps its generation, so
+     * a page computed concurrently with the change is not stored, while loads for other
+     * users still are. Guarded by entries; a user is only here while a load is running.
+     */
+    private final Map<UUID, Loading> loading = new HashMap<>();
+    // Bumped by invalidateAll, which also covers users whose load has not registered yet.
+    private long allGeneration;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public FeedPage get(UUID userId, String pageKey, Supplier<FeedPage> loader) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(userId);
+            if (entry != null && now - entry.createdAt > ttlMs) {
+                entries.remove(userId);
+                evictions.increment();
+            } else if (entry != null && entry.pages.containsKey(pageKey)) {
+                hits.increment();
+                return entry.pages.get(pageKey);
+            }
+        }
+
+        misses.increment();
+        Loading load;
+        long startGeneration;
+        long startAllGeneration;
+        synchronized (entries) {
+            load = loading.computeIfAbsent(userId, id -> new Loading());
+            load.count++;
+            startGeneration = load.generation;
+            startAllGeneration = allGeneration;
+        }
+        FeedPage page = null;
+        try {
+            page = loader.get();
+        } finally {
+            synchronized (entries) {
+                if (page != null && load.generation == startGeneration && allGeneration == startAllGeneration) {
+                    entries.computeIfAbsent(userId, id -> new Entry(now)).pages.put(pageKey, page);
+                    evictOverflow();
+                }
+                if (--load.count == 0) {
+                    loading.remove(userId);
+                }
+            }
+        }
+        return page;
+    }
+
+    @TransactionalEventListener
+    @Order(20)
+    public void onShelfChange(ShelfChangeEvent event) {
+        invalidate(event.getUserId(), List.of(event.getBookId()));
+    }
+
+    @TransactionalEventListener
+    @Order(20)
+    public void onShelfBatch(ShelfBatchEvent event) {
+        List<String> bookIds = new ArrayList<>(event.getShelfBookIds());
+        bookIds.addAll(event.getWishlistBookIds());
+        invalidate(event.getUserId(), bookIds);
+    }
+
+    private void invalidate(UUID changed, List<String> bookIds) {
+        if (!swapMatchIndex.isReady()) {
+            invalidateAll();
+            return;
+        }
+        Set<UUID> affected = new HashSet<>();
+        bookIds.forEach(bookId -> affected.addAll(swapMatchIndex.findUsersWithBook(bookId)));
+        affected.add(changed);
+        synchronized (entries) {
+            for (UUID userId : affected) {
+                if (entries.remove(userId) != null) {
+                    invalidations.increment();
+                }
+                Loading load = loading.get(userId);
+                if (load != null) {
+                    load.generation++;
+                }
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            allGeneration++;
+            invalidations.add(entries.size());
+            entries.clear();
+        }
+    }
+
+    public CacheStats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return CacheStats.builder()
+                .hits(hits.sum())
+                .misses(misses.sum())
+                .evictions(evictions.sum())
+                .invalidations(invalidations.sum())
+                .size(size)
+                .build();
+    }
+
+    private void evictOverflow() {
+        Iterator<UUID> eldest = entries.keySet().iterator();
+        while (entries.size() > maxUsers && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private static class Loading {
+        private int count;
+        private long generation;
+    }
+
+    private static class Entry {
+        private final long createdAt;
+        private final Map<String, FeedPage> pages = new HashMap<>();
+
+        Entry(long createdAt) {
+            this.createdAt = createdAt;
+        }
+    }
+}
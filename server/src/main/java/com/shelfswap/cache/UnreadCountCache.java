@@ -0,0 +1,157 @@
+package com.shelfswap.cache;
+
+import com.shelfswap.dtos.CacheStats;
+import com.shelfswap.dtos.UnreadCounts;
+import com.shelfswap.dtos.UserCount;
+import com.shelfswap.entities.Conversation;
+import com.shelfswap.events.ConversationStatusEvent;
+import com.shelfswap.events.MessageSentEvent;
+import com.shelfswap.events.MessagesReadEvent;
+import com.shelfswap.repositories.ConversationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-user unread message and pending request totals for the nav badge. A user's totals
+ * are loaded on first use and then kept current from committed messaging events, so
+ * polling the badge never touches the database. Loads and events can interleave, so
+ * cached totals are periodically reconciled with the per-conversation counters, which
+ * also drops users who stopped asking.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UnreadCountCache {
+    private static final int RECONCILE_BATCH_SIZE = 1_000;
+
+    private final ConversationRepository conversationRepository;
+
+    @Value("${shelfswap.messages.unread.idle-ttl-ms}")
+    private long idleTtlMs;
+
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    // Cached totals that reconciliation found to have drifted.
+    private final LongAdder invalidations = new LongAdder();
+
+    public UnreadCounts get(UUID userId) {
+        Entry entry = entries.get(userId);
+        if (entry != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            Entry loaded = load(List.of(userId)).get(userId);
+            entry = entries.putIfAbsent(userId, loaded);
+            if (entry == null) {
+                entry = loaded;
+            }
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        return UnreadCounts.builder()
+                .unreadMessages(Math.max(entry.unreadMessages.get(), 0))
+                .pendingRequests(Math.max(entry.pendingRequests.get(), 0))
+                .build();
+    }
+
+    @TransactionalEventListener
+    public void onMessageSent(MessageSentEvent event) {
+        adjust(event.getRecipientId(), 1, 0);
+    }
+
+    @TransactionalEventListener
+    public void onMessagesRead(MessagesReadEvent event) {
+        adjust(event.getReceipt().getReaderId(), -event.getClearedCount(), 0);
+    }
+
+    @TransactionalEventListener
+    public void onConversationStatus(ConversationStatusEvent event) {
+        // Only the recipient of a request counts it; it stops pending once accepted or rejected.
+        int delta = event.getChange().getStatus() == Conversation.ConversationStatus.PENDING ? 1 : -1;
+        adjust(event.getChange().getRecipientId(), 0, delta);
+    }
+
+    @Scheduled(
+            initialDelayString = "${shelfswap.messages.unread.reconcile-ms}",
+            fixedDelayString = "${shelfswap.messages.unread.reconcile-ms}"
+    )
+    public void reconcile() {
+        long idleSince = System.currentTimeMillis() - idleTtlMs;
+        entries.entrySet().removeIf(entry -> {
+            boolean idle = entry.getValue().lastAccess < idleSince;
+            if (idle) {
+                evictions.increment();
+            }
+            return idle;
+        });
+
+        List<UUID> userIds = new ArrayList<>(entries.keySet());
+        for (int from = 0; from < userIds.size(); from += RECONCILE_BATCH_SIZE) {
+            List<UUID> batch = userIds.subList(from, Math.min(from + RECONCILE_BATCH_SIZE, userIds.size()));
+            load(batch).forEach((userId, fresh) -> {
+                Entry cached = entries.get(userId);
+                if (cached == null) {
+                    return;
+                }
+                long unread = fresh.unreadMessages.get();
+                long pending = fresh.pendingRequests.get();
+                if (cached.unreadMessages.getAndSet(unread) != unread
+                        | cached.pendingRequests.getAndSet(pending) != pending) {
+                    invalidations.increment();
+                }
+            });
+        }
+    }
+
+    public CacheStats getStats() {
+        return CacheStats.builder()
+                .hits(hits.sum())
+                .misses(misses.sum())
+                .evictions(evictions.sum())
+                .invalidations(invalidations.sum())
+                .size(entries.size())
+                .build();
+    }
+
+    // Users nobody has asked about yet are left alone; their totals are read fresh on first use.
+    private void adjust(UUID userId, long unreadDelta, long pendingDelta) {
+        Entry entry = entries.get(userId);
+        if (entry != null) {
+            entry.unreadMessages.addAndGet(unreadDelta);
+            entry.pendingRequests.addAndGet(pendingDelta);
+        }
+    }
+
+    private Map<UUID, Entry> load(Collection<UUID> userIds) {
+        Map<UUID, Entry> loaded = new HashMap<>();
+        userIds.forEach(userId -> loaded.put(userId, new Entry()));
+        List<UserCount> unread = new ArrayList<>(conversationRepository.sumInitiatorUnread(userIds));
+        unread.addAll(conversationRepository.sumRecipientUnread(userIds));
+        unread.forEach(count -> loaded.get(count.getUserId()).unreadMessages.addAndGet(count.getCount()));
+        conversationRepository.countPendingReceived(userIds)
+                .forEach(count -> loaded.get(count.getUserId()).pendingRequests.set(count.getCount()));
+        return loaded;
+    }
+
+    private static class Entry {
+        private final AtomicLong unreadMessages = new AtomicLong();
+        private final AtomicLong pendingRequests = new AtomicLong();
+        private volatile long lastAccess = System.currentTimeMillis();
+    }
+}
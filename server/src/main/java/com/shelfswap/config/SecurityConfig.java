@@ -2,6 +2,7 @@ package com.shelfswap.config;
 
 import com.shelfswap.security.JwtAuthenticationFilter;
 import com.shelfswap.services.AuthenticationService;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -33,6 +34,10 @@ public class SecurityConfig {
     ) throws Exception {
         http.authorizeHttpRequests(auth -> auth
                         .requestMatchers(HttpMethod.POST, "/api/auth/**").permitAll()
+                        // Completing a stream re-dispatches without the bearer token. The stream
+                        // request itself is authenticated: clients read it with fetch, which,
+                        // unlike EventSource, sends the Authorization header.
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .anyRequest().authenticated()
         )
         .csrf(AbstractHttpConfigurer::disable)
@@ -2,17 +2,30 @@ package com.shelfswap.controllers;
 
 import com.shelfswap.dtos.BookAddRequest;
 import com.shelfswap.dtos.BookDTO;
-import com.shelfswap.dtos.UserDTO;
+import com.shelfswap.dtos.BookOwnerPage;
+import com.shelfswap.dtos.BookPopularity;
+import com.shelfswap.dtos.BookSearchResult;
+import com.shelfswap.dtos.ImportProgress;
+import com.shelfswap.dtos.PopularBook;
 import com.shelfswap.entities.Book;
+import com.shelfswap.exceptions.NotFoundException;
+import com.shelfswap.popularity.PopularityRanking;
 import com.shelfswap.repositories.BookRepository;
 import com.shelfswap.repositories.ShelfBookRepository;
 import com.shelfswap.services.BookService;
+import com.shelfswap.services.LibraryImportService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import java.util.List;
 import java.util.UUID;
@@ -25,6 +38,7 @@ public class BookController {
     private final BookService bookService;
     private final ShelfBookRepository shelfBookRepository;
     private final BookRepository bookRepository;
+    private final LibraryImportService libraryImportService;
 
     @GetMapping("/shelf/{userId}")
     public ResponseEntity<List<Book>> getShelfBooksByUserId(@PathVariable UUID userId) {
@@ -64,23 +78,66 @@ public class BookController {
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ImportProgress> importLibrary(@RequestParam("file") MultipartFile file,
+                                                        @RequestAttribute("userId") UUID userId) throws IOException {
+        // Copied to disk rather than held in memory; the import reads it in the background and deletes it.
+        Path upload = Files.createTempFile("shelfswap-import-", ".csv");
+        try {
+            file.transferTo(upload);
+        } catch (IOException ex) {
+            Files.deleteIfExists(upload);
+            throw ex;
+        }
+        return new ResponseEntity<>(libraryImportService.startImport(userId, upload), HttpStatus.ACCEPTED);
+    }
+
+    @GetMapping("/import/progress")
+    public ResponseEntity<ImportProgress> getImportProgress(@RequestAttribute("userId") UUID userId) {
+        ImportProgress progress = libraryImportService.getProgress(userId)
+                .orElseThrow(() -> new NotFoundException("No import has been started"));
+        return new ResponseEntity<>(progress, HttpStatus.OK);
+    }
+
     @GetMapping("/search")
-    public ResponseEntity<List<Book>> searchBooks(@RequestParam String q) {
-        List<Book> books = bookService.searchBooksByTitle(q);
+    public ResponseEntity<List<Book>> searchBooks(@RequestParam String q,
+                                                  @RequestParam(required = false) Integer page,
+                                                  @RequestParam(required = false) Integer limit) {
+        List<Book> books = bookService.searchBooksByTitle(q, page, limit);
         return new ResponseEntity<>(books, HttpStatus.OK);
     }
 
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<BookSearchResult>> autocomplete(@RequestParam String q,
+                                                               @RequestParam(required = false) Integer limit) {
+        return new ResponseEntity<>(bookService.autocomplete(q, limit), HttpStatus.OK);
+    }
+
+    @GetMapping("/popular")
+    public ResponseEntity<List<PopularBook>> getPopularBooks(@RequestParam(defaultValue = "MOST_WANTED") PopularityRanking ranking,
+                                                             @RequestParam(required = false) Integer limit) {
+        return new ResponseEntity<>(bookService.getPopularBooks(ranking, limit), HttpStatus.OK);
+    }
+
     @GetMapping("/{bookId}")
     public ResponseEntity<Book> getBookById(@PathVariable String bookId) {
         Book book = bookService.getBookById(bookId);
         return new ResponseEntity<>(book, HttpStatus.OK);
     }
 
+    @GetMapping("/{bookId}/popularity")
+    public ResponseEntity<BookPopularity> getBookPopularity(@PathVariable String bookId) {
+        return new ResponseEntity<>(bookService.getPopularity(bookId), HttpStatus.OK);
+    }
+
     @GetMapping("/{bookId}/users")
-    public ResponseEntity<List<UserDTO>> getUsersWhoHaveBook(@PathVariable String bookId,
-                                                             @RequestAttribute("userId") UUID currentUserId) {
-        List<UserDTO> users = bookService.getUsersWhoHaveBook(bookId, currentUserId);
-        return new ResponseEntity<>(users, HttpStatus.OK);
+    public ResponseEntity<BookOwnerPage> getUsersWhoHaveBook(@PathVariable String bookId,
+                                                             @RequestAttribute("userId") UUID currentUserId,
+                                                             @RequestParam(required = false) String cursor,
+                                                             @RequestParam(required = false) Integer limit,
+                                                             @RequestParam(defaultValue = "false") boolean wantedFirst) {
+        BookOwnerPage owners = bookService.getUsersWhoHaveBook(bookId, currentUserId, cursor, limit, wantedFirst);
+        return new ResponseEntity<>(owners, HttpStatus.OK);
     }
 
     @GetMapping("/matched/{userId}")
@@ -1,15 +1,20 @@
 package com.shelfswap.controllers;
 
-import com.shelfswap.dtos.FeedItem;
+import com.shelfswap.dtos.FeedPage;
+import com.shelfswap.dtos.TradeCycleDTO;
 import com.shelfswap.services.FeedService;
+import com.shelfswap.services.FeedStreamService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.UUID;
@@ -20,11 +25,24 @@ import java.util.UUID;
 @Slf4j
 public class FeedController {
     private final FeedService feedService;
+    private final FeedStreamService feedStreamService;
 
     @GetMapping
-    public ResponseEntity<List<FeedItem>> getFeed(@RequestAttribute("userId") UUID userId) {
-        List<FeedItem> feedData = feedService.getFeedMatches(userId);
+    public ResponseEntity<FeedPage> getFeed(@RequestAttribute("userId") UUID userId,
+                                            @RequestParam(required = false) String cursor,
+                                            @RequestParam(required = false) Integer limit) {
+        FeedPage feedData = feedService.getFeedMatches(userId, cursor, limit);
 
         return new ResponseEntity<>(feedData, HttpStatus.OK);
     }
+
+    @GetMapping("/cycles")
+    public ResponseEntity<List<TradeCycleDTO>> getTradeCycles(@RequestAttribute("userId") UUID userId) {
+        return new ResponseEntity<>(feedService.getTradeCycles(userId), HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamFeed(@RequestAttribute("userId") UUID userId) {
+        return feedStreamService.subscribe(userId);
+    }
 }
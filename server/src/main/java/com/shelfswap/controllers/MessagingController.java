@@ -1,17 +1,24 @@
 package com.shelfswap.controllers;
 
 import com.shelfswap.dtos.ConversationDTO;
+import com.shelfswap.dtos.ConversationPage;
 import com.shelfswap.dtos.MessageDTO;
+import com.shelfswap.dtos.MessagePage;
+import com.shelfswap.dtos.MessageSearchPage;
+import com.shelfswap.dtos.MessagingSync;
 import com.shelfswap.dtos.MessageRequest;
 import com.shelfswap.dtos.StartConversationRequest;
+import com.shelfswap.dtos.UnreadCounts;
+import com.shelfswap.services.MessageStreamService;
 import com.shelfswap.services.MessagingService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -20,6 +27,7 @@ import java.util.UUID;
 public class MessagingController {
     
     private final MessagingService messagingService;
+    private final MessageStreamService messageStreamService;
     
     @PostMapping("/conversations")
     public ResponseEntity<ConversationDTO> startConversation(
@@ -31,11 +39,36 @@ public class MessagingController {
     }
     
     @GetMapping("/conversations")
-    public ResponseEntity<List<ConversationDTO>> getUserConversations(@RequestAttribute("userId") UUID userId) {
-        List<ConversationDTO> conversations = messagingService.getUserConversations(userId);
+    public ResponseEntity<ConversationPage> getUserConversations(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestAttribute("userId") UUID userId) {
+        ConversationPage conversations = messagingService.getUserConversations(userId, cursor, limit);
         return ResponseEntity.ok(conversations);
     }
     
+    @GetMapping("/search")
+    public ResponseEntity<MessageSearchPage> searchMessages(
+            @RequestParam String q,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestAttribute("userId") UUID userId) {
+        return ResponseEntity.ok(messagingService.searchMessages(userId, q, cursor, limit));
+    }
+    
+    @GetMapping("/sync")
+    public ResponseEntity<MessagingSync> sync(
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) Long timeoutMs,
+            @RequestAttribute("userId") UUID userId) {
+        return ResponseEntity.ok(messagingService.sync(userId, since, timeoutMs));
+    }
+    
+    @GetMapping("/unread-count")
+    public ResponseEntity<UnreadCounts> getUnreadCounts(@RequestAttribute("userId") UUID userId) {
+        return ResponseEntity.ok(messagingService.getUnreadCounts(userId));
+    }
+    
     @GetMapping("/check-conversation/{otherUserId}")
     public ResponseEntity<ConversationDTO> checkExistingConversation(
             @PathVariable UUID otherUserId,
@@ -45,14 +78,20 @@ public class MessagingController {
     }
     
     @GetMapping("/requests/received")
-    public ResponseEntity<List<ConversationDTO>> getPendingMessageRequests(@RequestAttribute("userId") UUID userId) {
-        List<ConversationDTO> requests = messagingService.getPendingMessageRequests(userId);
+    public ResponseEntity<ConversationPage> getPendingMessageRequests(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestAttribute("userId") UUID userId) {
+        ConversationPage requests = messagingService.getPendingMessageRequests(userId, cursor, limit);
         return ResponseEntity.ok(requests);
     }
     
     @GetMapping("/requests/sent")
-    public ResponseEntity<List<ConversationDTO>> getSentMessageRequests(@RequestAttribute("userId") UUID userId) {
-        List<ConversationDTO> requests = messagingService.getSentMessageRequests(userId);
+    public ResponseEntity<ConversationPage> getSentMessageRequests(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestAttribute("userId") UUID userId) {
+        ConversationPage requests = messagingService.getSentMessageRequests(userId, cursor, limit);
         return ResponseEntity.ok(requests);
     }
     
@@ -82,12 +121,13 @@ public class MessagingController {
     }
     
     @GetMapping("/conversations/{conversationId}")
-    public ResponseEntity<List<MessageDTO>> getConversationMessages(
+    public ResponseEntity<MessagePage> getConversationMessages(
             @PathVariable UUID conversationId,
-            @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer size,
             @RequestAttribute("userId") UUID userId) {
-        List<MessageDTO> messages = messagingService.getConversationMessages(conversationId, userId, page, size);
+        MessagePage messages = messagingService.getConversationMessages(conversationId, userId, before, after, size);
         return ResponseEntity.ok(messages);
     }
     
@@ -98,4 +138,9 @@ public class MessagingController {
         messagingService.markMessagesAsRead(conversationId, userId);
         return ResponseEntity.ok().build();
     }
+    
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMessages(@RequestAttribute("userId") UUID userId) {
+        return messageStreamService.subscribe(userId);
+    }
 }
\ No newline at end of file
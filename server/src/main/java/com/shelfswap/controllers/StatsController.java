@@ -0,0 +1,32 @@
+package com.shelfswap.controllers;
+
+import com.shelfswap.cache.BookCatalogCache;
+import com.shelfswap.cache.FeedCache;
+import com.shelfswap.cache.UnreadCountCache;
+import com.shelfswap.dtos.CacheStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/stats")
+@RequiredArgsConstructor
+public class StatsController {
+    private final FeedCache feedCache;
+    private final BookCatalogCache bookCatalogCache;
+    private final UnreadCountCache unreadCountCache;
+
+    @GetMapping("/caches")
+    public ResponseEntity<Map<String, CacheStats>> getCacheStats() {
+        return new ResponseEntity<>(Map.of(
+                "feed", feedCache.getStats(),
+                "books", bookCatalogCache.getStats(),
+                "unread", unreadCountCache.getStats()
+        ), HttpStatus.OK);
+    }
+}
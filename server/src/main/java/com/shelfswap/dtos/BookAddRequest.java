@@ -7,13 +7,16 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
 @Builder
 public class BookAddRequest {
+    private static final Pattern OL_KEY = Pattern.compile("(OL\\d+[A-Z])");
+
     @NotBlank(message = "Book ID is required")
     private String id;
 
@@ -29,13 +32,12 @@ public class BookAddRequest {
         this.id = extractOLKey(id); // automatically clean it
     }
 
-    private String extractOLKey(String input) {
+    // Pulls the Open Library key out of an ID, path or URL such as "/works/OL45883W".
+    public static String extractOLKey(String input) {
         if (input == null || input.isEmpty()) {
             return null;
         }
-        String regex = "(OL\\d+[A-Z])";
-        java.util.regex.Pattern pattern = java.util.regex.Pattern.compile(regex);
-        java.util.regex.Matcher matcher = pattern.matcher(input);
+        Matcher matcher = OL_KEY.matcher(input);
         return matcher.find() ? matcher.group(1) : null;
     }
 }
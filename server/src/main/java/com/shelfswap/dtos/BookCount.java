@@ -0,0 +1,13 @@
+package com.shelfswap.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookCount {
+    private String bookId;
+    private long count;
+}
@@ -0,0 +1,20 @@
+package com.shelfswap.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookOwner {
+    private UUID id;
+    private String email;
+    private String firstName;
+    private String lastName;
+    private boolean hasWantedBooks;
+}
@@ -0,0 +1,17 @@
+package com.shelfswap.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookOwnerPage {
+    private List<BookOwner> items;
+    private String nextCursor;
+}
@@ -0,0 +1,25 @@
+package com.shelfswap.dtos;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Projection of the owners-of-book queries; shelvedAt and shelfId only feed the cursor.
+public interface BookOwnerRow {
+    UUID getId();
+
+    String getEmail();
+
+    String getFirstName();
+
+    String getLastName();
+
+    boolean getHasWantedBooks();
+
+    LocalDateTime getShelvedAt();
+
+    UUID getShelfId();
+
+    default BookOwner toBookOwner() {
+        return new BookOwner(getId(), getEmail(), getFirstName(), getLastName(), getHasWantedBooks());
+    }
+}
@@ -0,0 +1,19 @@
+package com.shelfswap.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookPopularity {
+    private String bookId;
+    private long shelfCount;
+    private long wishlistCount;
+    // Wishlists per shelved copy; books nobody owns count as one copy.
+    private double demandRatio;
+    private double trendingScore;
+}
@@ -0,0 +1,20 @@
+package com.shelfswap.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStats {
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+    // Lookups answered without reaching the backing store, e.g. by a Bloom filter.
+    private long shortCircuits;
+    private long size;
+}
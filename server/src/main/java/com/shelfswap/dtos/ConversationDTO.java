@@ -22,5 +22,9 @@ public class ConversationDTO {
     private LocalDateTime createdAt;
     private LocalDateTime lastMessageAt;
     private String lastMessage;
+    private UUID lastMessageSenderId;
     private int unreadMessageCount;
+    // Read watermarks of the current user and of the other participant.
+    private LocalDateTime lastReadAt;
+    private LocalDateTime otherLastReadAt;
 }
\ No newline at end of file
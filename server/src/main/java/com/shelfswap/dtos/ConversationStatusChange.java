@@ -0,0 +1,20 @@
+package com.shelfswap.dtos;
+
+import com.shelfswap.entities.Conversation;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationStatusChange {
+    private UUID conversationId;
+    private UUID initiatorId;
+    private UUID recipientId;
+    private Conversation.ConversationStatus status;
+}
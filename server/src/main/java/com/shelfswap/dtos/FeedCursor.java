@@ -0,0 +1,93 @@
+package com.shelfswap.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Keyset position in the feed. After the first page it also carries the time and the
+ * signal weights the feed was scored with, so every later page scores against the same
+ * ones on any node, and the (score, userId) key stays comparable across pages. Cursors
+ * are signed, so a client cannot pick its own weights or mint new cache keys.
+ */
+@Getter
+@AllArgsConstructor
+public class FeedCursor {
+    public static final FeedCursor FIRST = new FeedCursor(Double.POSITIVE_INFINITY, new UUID(0L, 0L), 0L, Map.of());
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private final double score;
+    private final UUID userId;
+    // Epoch millis the feed is scored at; 0 until the first page is scored.
+    private final long scoredAt;
+    private final Map<String, Double> weights;
+
+    public boolean isScored() {
+        return scoredAt > 0;
+    }
+
+    public FeedCursor scoredWith(long scoredAt, Map<String, Double> weights) {
+        return new FeedCursor(score, userId, scoredAt, Map.copyOf(weights));
+    }
+
+    public FeedCursor after(double score, UUID userId) {
+        return new FeedCursor(score, userId, scoredAt, weights);
+    }
+
+    public String encode(String secret) {
+        String encodedWeights = new TreeMap<>(weights).entrySet()
+                .stream()
+                .map(weight -> weight.getKey() + "=" + weight.getValue())
+                .collect(Collectors.joining(","));
+        byte[] raw = (score + ":" + userId + ":" + scoredAt + ":" + encodedWeights).getBytes(StandardCharsets.UTF_8);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(raw) + "." + encoder.encodeToString(sign(raw, secret));
+    }
+
+    public static FeedCursor decode(String cursor, String secret) {
+        if (cursor == null || cursor.isBlank()) {
+            return FIRST;
+        }
+        try {
+            int separator = cursor.indexOf('.');
+            byte[] raw = Base64.getUrlDecoder().decode(cursor.substring(0, separator));
+            byte[] signature = Base64.getUrlDecoder().decode(cursor.substring(separator + 1));
+            if (!MessageDigest.isEqual(signature, sign(raw, secret))) {
+                throw new IllegalArgumentException("Invalid feed cursor");
+            }
+            String[] parts = new String(raw, StandardCharsets.UTF_8).split(":", 4);
+            Map<String, Double> weights = new TreeMap<>();
+            if (!parts[3].isEmpty()) {
+                for (String weight : parts[3].split(",")) {
+                    int equals = weight.indexOf('=');
+                    weights.put(weight.substring(0, equals), Double.parseDouble(weight.substring(equals + 1)));
+                }
+            }
+            return new FeedCursor(Double.parseDouble(parts[0]), UUID.fromString(parts[1]),
+                    Long.parseLong(parts[2]), Map.copyOf(weights));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            throw new IllegalArgumentException("Invalid feed cursor");
+        }
+    }
+
+    private static byte[] sign(byte[] raw, String secret) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM));
+            return mac.doFinal(raw);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.shelfswap.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A matched word in a search snippet, as a [start, end) range of UTF-16 offsets.
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Highlight {
+    private int start;
+    private int end;
+}
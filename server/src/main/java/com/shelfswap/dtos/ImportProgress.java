@@ -0,0 +1,22 @@
+package com.shelfswap.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportProgress {
+    private long rowsRead;
+    private long imported;
+    // Already on the user's shelf or wishlist.
+    private long skipped;
+    private long failed;
+    private List<ImportRowError> errors;
+    private boolean done;
+}
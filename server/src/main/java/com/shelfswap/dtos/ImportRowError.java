@@ -0,0 +1,17 @@
+package com.shelfswap.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportRowError {
+    // Spreadsheet row number; the header is row 1.
+    private int row;
+    private String title;
+    private String message;
+}
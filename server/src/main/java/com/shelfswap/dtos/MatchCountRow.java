@@ -0,0 +1,12 @@
+package com.shelfswap.dtos;
+
+import java.util.UUID;
+
+// Projection of UserMatchRepository.recountForUser: one side of a pair, counted from the list tables.
+public interface MatchCountRow {
+    UUID getPartnerId();
+
+    long getTheyOwnCount();
+
+    long getIOwnCount();
+}
@@ -0,0 +1,22 @@
+package com.shelfswap.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MatchedBook {
+    private UUID partnerId;
+    private String id;
+    private String title;
+    private String author;
+    private String coverUrl;
+
+    public BookDTO toBookDTO() {
+        return new BookDTO(id, title, author, coverUrl);
+    }
+}
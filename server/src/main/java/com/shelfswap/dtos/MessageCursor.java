@@ -0,0 +1,42 @@
+package com.shelfswap.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+@Getter
+@AllArgsConstructor
+public class MessageCursor {
+    // Newer than any stored message; Postgres timestamps stop well before LocalDateTime.MAX.
+    public static final MessageCursor LATEST = new MessageCursor(
+            LocalDateTime.of(9999, 12, 31, 23, 59, 59),
+            new UUID(-1L, -1L)
+    );
+    public static final MessageCursor EARLIEST = new MessageCursor(LocalDateTime.of(1970, 1, 1, 0, 0), new UUID(0L, 0L));
+
+    private final LocalDateTime sentAt;
+    private final UUID messageId;
+
+    public static MessageCursor of(MessageDTO message) {
+        return new MessageCursor(message.getSentAt(), message.getId());
+    }
+
+    public String encode() {
+        String raw = sentAt + "," + messageId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MessageCursor decode(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(",");
+            return new MessageCursor(LocalDateTime.parse(parts[0]), UUID.fromString(parts[1]));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException ex) {
+            throw new IllegalArgumentException("Invalid message cursor");
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.shelfswap.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessagePage {
+    // Newest first.
+    private List<MessageDTO> items;
+    // Pass as "before" for older messages; null once the start of the conversation is reached.
+    private String nextCursor;
+    // Pass as "after" for newer messages; always set, so it can be polled.
+    private String prevCursor;
+}
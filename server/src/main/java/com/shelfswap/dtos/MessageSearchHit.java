@@ -0,0 +1,19 @@
+package com.shelfswap.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageSearchHit {
+    private MessageDTO message;
+    // The part of the message around the first match, with "…" where it was cut.
+    private String snippet;
+    private List<Highlight> highlights;
+}
@@ -0,0 +1,19 @@
+package com.shelfswap.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageSearchPage {
+    // Newest first.
+    private List<MessageSearchHit> items;
+    // Pass as "cursor" for older matches; null on the last page.
+    private String nextCursor;
+}
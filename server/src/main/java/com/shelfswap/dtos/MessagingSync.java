@@ -0,0 +1,25 @@
+package com.shelfswap.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessagingSync {
+    // Pass back as "since" on the next sync.
+    private long token;
+    // More changes are waiting; sync again straight away.
+    private boolean hasMore;
+    // The token is unknown or its changes were pruned; reload the inbox and requests, then sync from this token.
+    private boolean resync;
+    // Current state of every conversation touched since the token, including status and read watermarks.
+    private List<ConversationDTO> conversations;
+    private List<MessageDTO> messages;
+    private List<ReadReceipt> reads;
+}
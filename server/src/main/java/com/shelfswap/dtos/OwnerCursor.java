@@ -0,0 +1,46 @@
+package com.shelfswap.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+@Getter
+@AllArgsConstructor
+public class OwnerCursor {
+    // Sorts after every real row in both orderings; Postgres timestamps stop well before LocalDateTime.MAX.
+    public static final OwnerCursor FIRST = new OwnerCursor(
+            true,
+            LocalDateTime.of(9999, 12, 31, 23, 59, 59),
+            new UUID(-1L, -1L)
+    );
+
+    private final boolean hasWantedBooks;
+    private final LocalDateTime shelvedAt;
+    private final UUID shelfId;
+
+    public String encode() {
+        String raw = hasWantedBooks + "," + shelvedAt + "," + shelfId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static OwnerCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return FIRST;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(",");
+            return new OwnerCursor(
+                    Boolean.parseBoolean(parts[0]),
+                    LocalDateTime.parse(parts[1]),
+                    UUID.fromString(parts[2])
+            );
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException ex) {
+            throw new IllegalArgumentException("Invalid owner cursor");
+        }
+    }
+}
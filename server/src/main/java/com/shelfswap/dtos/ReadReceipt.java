@@ -0,0 +1,21 @@
+package com.shelfswap.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReadReceipt {
+    private UUID conversationId;
+    private UUID readerId;
+    // The reader has read every message up to (readUpTo, readUpToMessageId) in message order.
+    private LocalDateTime readUpTo;
+    private UUID readUpToMessageId;
+}
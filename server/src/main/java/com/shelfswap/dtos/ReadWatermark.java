@@ -0,0 +1,11 @@
+package com.shelfswap.dtos;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Projection of ConversationRepository.findReadWatermark: the last message a participant has read.
+public interface ReadWatermark {
+    LocalDateTime getReadAt();
+
+    UUID getMessageId();
+}
@@ -0,0 +1,28 @@
+package com.shelfswap.dtos;
+
+import com.shelfswap.entities.Book;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShelvedBook {
+    private String id;
+    private String title;
+    private String author;
+    private String coverUrl;
+    private long shelfCount;
+
+    public Book toBook() {
+        return Book.builder()
+                .id(id)
+                .title(title)
+                .author(author)
+                .coverUrl(coverUrl)
+                .build();
+    }
+}
@@ -0,0 +1,16 @@
+package com.shelfswap.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TradeLegDTO {
+    private UserDTO giver;
+    private UserDTO receiver;
+    private BookDTO book;
+}
@@ -0,0 +1,17 @@
+package com.shelfswap.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserBookRef {
+    private UUID userId;
+    private String bookId;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,33 @@
+package com.shelfswap.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Last flushed state of the in-memory popularity counters, read back on startup.
+@Entity
+@Table(name = "book_popularity")
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class BookPopularitySummary {
+    @Id
+    private String bookId;
+
+    @Column(nullable = false)
+    private long shelfCount;
+
+    @Column(nullable = false)
+    private long wishlistCount;
+
+    @Column(nullable = false)
+    private double trendingScore;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
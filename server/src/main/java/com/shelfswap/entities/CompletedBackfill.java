@@ -0,0 +1,27 @@
+package com.shelfswap.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// A one-off startup backfill that has run to the end and need not run again.
+@Entity
+@Table(name = "completed_backfills")
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class CompletedBackfill {
+    @Id
+    private String name;
+
+    @Column(nullable = false)
+    private long rowCount;
+
+    @Column(nullable = false)
+    private LocalDateTime completedAt;
+}
@@ -2,19 +2,28 @@ package com.shelfswap.entities;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
 @Entity
-@Table(name = "conversations")
+@Table(
+        name = "conversations",
+        indexes = {
+                @Index(name = "idx_conversations_initiator_status", columnList = "initiator_id, status, last_message_at, id"),
+                @Index(name = "idx_conversations_recipient_status", columnList = "recipient_id, status, last_message_at, id")
+        }
+)
 @NoArgsConstructor
 @AllArgsConstructor
 @Getter
 @Setter
 @Builder
 public class Conversation {
+    public static final int PREVIEW_LENGTH = 200;
+
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
@@ -40,9 +49,50 @@ public class Conversation {
     @Column
     private LocalDateTime lastMessageAt;
 
+    @Column
+    private UUID lastMessageId;
+
+    // Summary of the latest message and per-participant unread counts, kept up to date by
+    // MessagingService so the inbox never has to look at the messages table.
+    @Column(length = PREVIEW_LENGTH)
+    private String lastMessagePreview;
+
+    @Column
+    private UUID lastMessageSenderId;
+
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private int initiatorUnreadCount;
+
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private int recipientUnreadCount;
+
+    // Read watermarks: each participant has read every message up to this (sent_at, id) in
+    // message order. The ID is null for watermarks set before it was kept.
+    @Column
+    private LocalDateTime initiatorLastReadAt;
+
+    @Column
+    private UUID initiatorLastReadId;
+
+    @Column
+    private LocalDateTime recipientLastReadAt;
+
+    @Column
+    private UUID recipientLastReadId;
+
     @OneToMany(mappedBy = "conversation", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private List<Message> messages;
 
+    public LocalDateTime lastReadAtOf(UUID userId) {
+        return initiator.getId().equals(userId) ? initiatorLastReadAt : recipientLastReadAt;
+    }
+
+    public UUID lastReadIdOf(UUID userId) {
+        return initiator.getId().equals(userId) ? initiatorLastReadId : recipientLastReadId;
+    }
+
     public enum ConversationStatus {
         PENDING,
         ACCEPTED,
@@ -53,6 +103,8 @@ public class Conversation {
     protected void onCreate() {
         this.createdAt = LocalDateTime.now();
         this.lastMessageAt = LocalDateTime.now();
+        this.initiatorLastReadAt = this.createdAt;
+        this.recipientLastReadAt = this.createdAt;
         if (this.status == null) {
             this.status = ConversationStatus.PENDING;
         }
@@ -0,0 +1,21 @@
+package com.shelfswap.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "feed_signal_weights")
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class FeedSignalWeight {
+    @Id
+    private String signal;
+
+    @Column(nullable = false)
+    private double weight;
+}
@@ -0,0 +1,27 @@
+package com.shelfswap.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// How far a dump file has been ingested, so an interrupted run can resume.
+@Entity
+@Table(name = "ingest_checkpoints")
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class IngestCheckpoint {
+    @Id
+    private String dumpName;
+
+    @Column(nullable = false)
+    private long linesDone;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -7,7 +7,10 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "messages")
+@Table(
+        name = "messages",
+        indexes = @Index(name = "idx_messages_conversation_sent", columnList = "conversation_id, sent_at, id")
+)
 @NoArgsConstructor
 @AllArgsConstructor
 @Getter
@@ -32,12 +35,16 @@ public class Message {
     @Column(nullable = false)
     private LocalDateTime sentAt;
 
+    // No longer updated: reads are tracked by the conversation's read watermarks.
     @Column(nullable = false)
     private boolean isRead;
 
+    // Messages sent through MessagingService get their sentAt under the conversation's row lock.
     @PrePersist
     protected void onCreate() {
-        this.sentAt = LocalDateTime.now();
+        if (this.sentAt == null) {
+            this.sentAt = LocalDateTime.now();
+        }
         this.isRead = false;
     }
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.shelfswap.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// One posting of a user's message search index: a word that occurs in a message of one of their conversations.
+@Entity
+@Table(
+        name = "message_search_terms",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_message_search_terms_posting",
+                columnNames = {"user_id", "term", "sent_at", "message_id"}
+        )
+)
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class MessageSearchTerm {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private UUID userId;
+
+    @Column(nullable = false, length = 64)
+    private String term;
+
+    @Column(nullable = false)
+    private LocalDateTime sentAt;
+
+    @Column(nullable = false)
+    private UUID messageId;
+
+    @Column(nullable = false)
+    private UUID conversationId;
+}
@@ -0,0 +1,56 @@
+package com.shelfswap.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// One entry of a user's append-only messaging change log, read by /api/messages/sync.
+@Entity
+@Table(
+        name = "messaging_changes",
+        uniqueConstraints = @UniqueConstraint(name = "uk_messaging_changes_user_seq", columnNames = {"user_id", "seq"}),
+        indexes = @Index(name = "idx_messaging_changes_created", columnList = "created_at")
+)
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class MessagingChange {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private UUID userId;
+
+    @Column(nullable = false)
+    private long seq;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Kind kind;
+
+    @Column(nullable = false)
+    private UUID conversationId;
+
+    @Column
+    private UUID messageId;
+
+    // Who made the change: the sender, the reader or the user who changed the status.
+    @Column(nullable = false)
+    private UUID actorId;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    public enum Kind {
+        CONVERSATION,
+        MESSAGE,
+        READ
+    }
+}
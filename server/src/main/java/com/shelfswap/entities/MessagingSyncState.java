@@ -0,0 +1,24 @@
+package com.shelfswap.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+// The last sequence number handed out in a user's messaging change log.
+@Entity
+@Table(name = "messaging_sync_state")
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class MessagingSyncState {
+    @Id
+    private UUID userId;
+
+    @Column(nullable = false)
+    private long lastSeq;
+}
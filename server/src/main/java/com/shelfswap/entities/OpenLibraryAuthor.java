@@ -0,0 +1,22 @@
+package com.shelfswap.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Staging table of Open Library author names, used to fill books.author during dump ingestion.
+@Entity
+@Table(name = "ol_authors")
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class OpenLibraryAuthor {
+    @Id
+    private String id;
+
+    @Column(nullable = false)
+    private String name;
+}
@@ -11,7 +11,10 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "shelf_books")
+@Table(
+        name = "shelf_books",
+        indexes = @Index(name = "idx_shelf_books_book_recent", columnList = "book_id, created_at DESC, id DESC")
+)
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
@@ -0,0 +1,44 @@
+package com.shelfswap.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(
+        name = "user_matches",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "partner_id"})
+)
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class UserMatch {
+    @Id
+    @GeneratedValue
+    private UUID id;
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    @Column(name = "partner_id", nullable = false)
+    private UUID partnerId;
+
+    @Column(name = "they_own_count", nullable = false)
+    private int theyOwnCount;
+
+    @Column(name = "i_own_count", nullable = false)
+    private int iOwnCount;
+
+    // Newest created_at among the shelf and wishlist entries that make up the pair.
+    @Column(name = "last_matched_at")
+    private LocalDateTime lastMatchedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,11 @@
+package com.shelfswap.events;
+
+import com.shelfswap.entities.Book;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class BookCreatedEvent {
+    private final Book book;
+}
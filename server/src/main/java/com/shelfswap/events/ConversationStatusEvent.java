@@ -0,0 +1,11 @@
+package com.shelfswap.events;
+
+import com.shelfswap.dtos.ConversationStatusChange;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class ConversationStatusEvent {
+    private final ConversationStatusChange change;
+}
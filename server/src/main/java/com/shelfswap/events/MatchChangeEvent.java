@@ -0,0 +1,15 @@
+package com.shelfswap.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+// Two users started or stopped having books the other wants.
+@Getter
+@AllArgsConstructor
+public class MatchChangeEvent {
+    private final UUID userId;
+    private final UUID partnerId;
+    private final boolean matched;
+}
@@ -0,0 +1,14 @@
+package com.shelfswap.events;
+
+import com.shelfswap.dtos.MessageDTO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+@Getter
+@AllArgsConstructor
+public class MessageSentEvent {
+    private final MessageDTO message;
+    private final UUID recipientId;
+}
@@ -0,0 +1,17 @@
+package com.shelfswap.events;
+
+import com.shelfswap.dtos.ReadReceipt;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+@Getter
+@AllArgsConstructor
+public class MessagesReadEvent {
+    private final ReadReceipt receipt;
+    // The participant whose messages were read.
+    private final UUID senderId;
+    // How many unread messages the reader had in the conversation.
+    private final int clearedCount;
+}
@@ -0,0 +1,24 @@
+package com.shelfswap.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+// Books added to a user's shelf and wishlist in one write, such as a chunk of a library import.
+@Getter
+@AllArgsConstructor
+public class ShelfBatchEvent {
+    private final UUID userId;
+    private final List<String> shelfBookIds;
+    private final List<String> wishlistBookIds;
+
+    public List<ShelfChangeEvent> changes() {
+        return Stream.concat(
+                shelfBookIds.stream().map(bookId -> new ShelfChangeEvent(userId, bookId, true, true)),
+                wishlistBookIds.stream().map(bookId -> new ShelfChangeEvent(userId, bookId, false, true))
+        ).toList();
+    }
+}
@@ -0,0 +1,15 @@
+package com.shelfswap.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+@Getter
+@AllArgsConstructor
+public class ShelfChangeEvent {
+    private final UUID userId;
+    private final String bookId;
+    private final boolean shelf;
+    private final boolean added;
+}
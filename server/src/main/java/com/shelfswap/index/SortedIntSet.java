@@ -0,0 +1,123 @@
+package com.shelfswap.index;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+/**
+ * Growable sorted array of primitive ints. Used as a compact posting list where a
+ * fixed-width bitmap over the whole ID space would mostly be empty.
+ */
+public class SortedIntSet {
+    private int[] values;
+    private int size;
+
+    public SortedIntSet() {
+        this.values = new int[4];
+    }
+
+    public boolean add(int value) {
+        int pos = Arrays.binarySearch(values, 0, size, value);
+        if (pos >= 0) {
+            return false;
+        }
+        pos = -pos - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(values, pos, values, pos + 1, size - pos);
+        values[pos] = value;
+        size++;
+        return true;
+    }
+
+    /**
+     * Appends without keeping order, for bulk loading. {@link #compact()} must be
+     * called before the set is read again.
+     */
+    public void append(int value) {
+        ensureCapacity(size + 1);
+        values[size++] = value;
+    }
+
+    public void compact() {
+        Arrays.sort(values, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || values[unique - 1] != values[i]) {
+                values[unique++] = values[i];
+            }
+        }
+        size = unique;
+        if (values.length > size * 2 && values.length > 4) {
+            values = Arrays.copyOf(values, Math.max(4, size));
+        }
+    }
+
+    public boolean remove(int value) {
+        int pos = Arrays.binarySearch(values, 0, size, value);
+        if (pos < 0) {
+            return false;
+        }
+        System.arraycopy(values, pos + 1, values, pos, size - pos - 1);
+        size--;
+        return true;
+    }
+
+    public boolean contains(int value) {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    public int get(int index) {
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(values[i]);
+        }
+    }
+
+    public void orInto(BitSet target) {
+        for (int i = 0; i < size; i++) {
+            target.set(values[i]);
+        }
+    }
+
+    public boolean intersects(SortedIntSet other) {
+        return firstCommon(other) >= 0;
+    }
+
+    /**
+     * Smallest value present in both sets, or -1 when they are disjoint.
+     */
+    public int firstCommon(SortedIntSet other) {
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            int a = values[i];
+            int b = other.values[j];
+            if (a == b) {
+                return a;
+            }
+            if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return -1;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > values.length) {
+            values = Arrays.copyOf(values, Math.max(capacity, values.length * 2));
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.shelfswap.index;
+
+import com.shelfswap.dtos.UserBookRef;
+import com.shelfswap.events.MatchChangeEvent;
+import com.shelfswap.events.ShelfBatchEvent;
+import com.shelfswap.events.ShelfChangeEvent;
+import com.shelfswap.repositories.ShelfBookRepository;
+import com.shelfswap.repositories.WishlistRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * In-memory have/want graph. Users and books are interned to dense ints so that
+ * book -> owners / wishers and user -> shelf / wishlist are primitive posting lists,
+ * and pairs are checked by intersecting them instead of joining tables. It backs
+ * pairwise checks, book lookups, the trade cycle search and match change events;
+ * the feed lists and ranks partners from the user_matches table instead, which can
+ * be paged in SQL. Live changes publish a {@link MatchChangeEvent} for every pair of
+ * users they join or split.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SwapMatchIndex {
+    private final ShelfBookRepository shelfBookRepository;
+    private final WishlistRepository wishlistRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Queue<ShelfChangeEvent> pendingChanges = new ConcurrentLinkedQueue<>();
+    private volatile boolean ready = false;
+    private volatile boolean rebuilding = true;
+
+    private Graph graph = new Graph();
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        rebuilding = true;
+        long start = System.currentTimeMillis();
+        Graph fresh = new Graph();
+        try (Stream<UserBookRef> shelf = shelfBookRepository.streamAllRefs();
+             Stream<UserBookRef> wishlist = wishlistRepository.streamAllRefs()) {
+            shelf.forEach(ref -> fresh.append(ref.getUserId(), ref.getBookId(), true));
+            wishlist.forEach(ref -> fresh.append(ref.getUserId(), ref.getBookId(), false));
+        }
+        fresh.compact();
+
+        lock.writeLock().lock();
+        try {
+            graph = fresh;
+            rebuilding = false;
+            ShelfChangeEvent event;
+            while ((event = pendingChanges.poll()) != null) {
+                apply(event);
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Swap match index built with {} users and {} books in {} ms",
+                fresh.users.size(), fresh.books.size(), System.currentTimeMillis() - start);
+    }
+
+    @TransactionalEventListener
+    @Order(0)
+    public void onShelfChange(ShelfChangeEvent event) {
+        List<MatchChangeEvent> matchChanges = List.of();
+        lock.writeLock().lock();
+        try {
+            if (rebuilding) {
+                pendingChanges.add(event);
+            } else {
+                matchChanges = applyAndDiff(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        matchChanges.forEach(eventPublisher::publishEvent);
+    }
+
+    // The batch's changes are applied and diffed under one write lock.
+    @TransactionalEventListener
+    @Order(0)
+    public void onShelfBatch(ShelfBatchEvent event) {
+        List<MatchChangeEvent> matchChanges = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            for (ShelfChangeEvent change : event.changes()) {
+                if (rebuilding) {
+                    pendingChanges.add(change);
+                } else {
+                    matchChanges.addAll(applyAndDiff(change));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        matchChanges.forEach(eventPublisher::publishEvent);
+    }
+
+    /**
+     * Pairwise check that stops at the first shared book in each direction, so its cost
+     * depends on the two users' lists only and not on how many partners either has.
+     */
+    public boolean hasMutualBooks(UUID user1Id, UUID user2Id) {
+        lock.readLock().lock();
+        try {
+            Integer user1 = graph.userIds.get(user1Id);
+            Integer user2 = graph.userIds.get(user2Id);
+            return user1 != null && user2 != null && isMutual(user1, user2);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Everyone who has the book on their shelf or wishlist.
+    public Set<UUID> findUsersWithBook(String bookId) {
+        lock.readLock().lock();
+        try {
+            Set<UUID> result = new HashSet<>();
+            Integer book = graph.bookIds.get(bookId);
+            if (book != null) {
+                graph.owners.get(book).forEach(user -> result.add(graph.users.get(user)));
+                graph.wishers.get(book).forEach(user -> result.add(graph.users.get(user)));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+     * Graph traversal primitives for TradeCycleFinder. They read the graph without
+     * locking, so callers must run them inside withReadLock.
+     */
+
+    <T> T withReadLock(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int userIndex(UUID userId) {
+        Integer user = graph.userIds.get(userId);
+        return user == null ? -1 : user;
+    }
+
+    UUID userAt(int user) {
+        return graph.users.get(user);
+    }
+
+    String bookAt(int book) {
+        return graph.books.get(book);
+    }
+
+    // Users owning at least one book that the given user wants.
+    BitSet outNeighbours(int user) {
+        BitSet result = new BitSet(graph.users.size());
+        graph.wishlists.get(user).forEach(book -> graph.owners.get(book).orInto(result));
+        result.clear(user);
+        return result;
+    }
+
+    // Users wanting at least one book that the given user owns.
+    BitSet inNeighbours(int user) {
+        BitSet result = new BitSet(graph.users.size());
+        graph.shelves.get(user).forEach(book -> graph.wishers.get(book).orInto(result));
+        result.clear(user);
+        return result;
+    }
+
+    // A book the owner has that the wanter wishes for, or -1.
+    int sharedBook(int wanter, int owner) {
+        return graph.wishlists.get(wanter).firstCommon(graph.shelves.get(owner));
+    }
+
+    private boolean isMutual(int user1, int user2) {
+        return graph.wishlists.get(user1).intersects(graph.shelves.get(user2))
+                && graph.shelves.get(user1).intersects(graph.wishlists.get(user2));
+    }
+
+    /*
+     * Only pairs of the acting user and someone on the other side of the changed book
+     * can gain or lose a match, so those are compared before and after the change.
+     */
+    private List<MatchChangeEvent> applyAndDiff(ShelfChangeEvent event) {
+        BitSet before = mutualCounterparts(event);
+        apply(event);
+        BitSet after = mutualCounterparts(event);
+        if (before.equals(after)) {
+            return List.of();
+        }
+
+        BitSet changed = (BitSet) before.clone();
+        changed.xor(after);
+        List<MatchChangeEvent> result = new ArrayList<>(changed.cardinality());
+        for (int partner = changed.nextSetBit(0); partner >= 0; partner = changed.nextSetBit(partner + 1)) {
+            result.add(new MatchChangeEvent(event.getUserId(), graph.users.get(partner), after.get(partner)));
+        }
+        return result;
+    }
+
+    private BitSet mutualCounterparts(ShelfChangeEvent event) {
+        BitSet result = new BitSet();
+        Integer user = graph.userIds.get(event.getUserId());
+        Integer book = graph.bookIds.get(event.getBookId());
+        if (user == null || book == null) {
+            return result;
+        }
+        SortedIntSet counterparts = event.isShelf() ? graph.wishers.get(book) : graph.owners.get(book);
+        counterparts.forEach(partner -> {
+            if (partner != user && isMutual(user, partner)) {
+                result.set(partner);
+            }
+        });
+        return result;
+    }
+
+    private void apply(ShelfChangeEvent event) {
+        if (event.isAdded()) {
+            graph.add(event.getUserId(), event.getBookId(), event.isShelf());
+        } else {
+            graph.remove(event.getUserId(), event.getBookId(), event.isShelf());
+        }
+    }
+
+    private static class Graph {
+        private final Map<UUID, Integer> userIds = new HashMap<>();
+        private final List<UUID> users = new ArrayList<>();
+        private final List<SortedIntSet> shelves = new ArrayList<>();
+        private final List<SortedIntSet> wishlists = new ArrayList<>();
+
+        private final Map<String, Integer> bookIds = new HashMap<>();
+        private final List<String> books = new ArrayList<>();
+        private final List<SortedIntSet> owners = new ArrayList<>();
+        private final List<SortedIntSet> wishers = new ArrayList<>();
+
+        void add(UUID userId, String bookId, boolean shelf) {
+            int user = internUser(userId);
+            int book = internBook(bookId);
+            if (shelf) {
+                shelves.get(user).add(book);
+                owners.get(book).add(user);
+            } else {
+                wishlists.get(user).add(book);
+                wishers.get(book).add(user);
+            }
+        }
+
+        void append(UUID userId, String bookId, boolean shelf) {
+            int user = internUser(userId);
+            int book = internBook(bookId);
+            if (shelf) {
+                shelves.get(user).append(book);
+                owners.get(book).append(user);
+            } else {
+                wishlists.get(user).append(book);
+                wishers.get(book).append(user);
+            }
+        }
+
+        void remove(UUID userId, String bookId, boolean shelf) {
+            Integer user = userIds.get(userId);
+            Integer book = bookIds.get(bookId);
+            if (user == null || book == null) {
+                return;
+            }
+            if (shelf) {
+                shelves.get(user).remove(book);
+                owners.get(book).remove(user);
+            } else {
+                wishlists.get(user).remove(book);
+                wishers.get(book).remove(user);
+            }
+        }
+
+        void compact() {
+            shelves.forEach(SortedIntSet::compact);
+            wishlists.forEach(SortedIntSet::compact);
+            owners.forEach(SortedIntSet::compact);
+            wishers.forEach(SortedIntSet::compact);
+        }
+
+        private int internUser(UUID userId) {
+            return userIds.computeIfAbsent(userId, id -> {
+                users.add(id);
+                shelves.add(new SortedIntSet());
+                wishlists.add(new SortedIntSet());
+                return users.size() - 1;
+            });
+        }
+
+        private int internBook(String bookId) {
+            return bookIds.computeIfAbsent(bookId, id -> {
+                books.add(id);
+                owners.add(new SortedIntSet());
+                wishers.add(new SortedIntSet());
+                return books.size() - 1;
+            });
+        }
+    }
+}
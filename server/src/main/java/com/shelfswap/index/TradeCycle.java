@@ -0,0 +1,17 @@
+package com.shelfswap.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@AllArgsConstructor
+public class TradeCycle {
+    private final List<TradeLeg> legs;
+
+    public boolean involves(UUID userId) {
+        return legs.stream().anyMatch(leg -> leg.getGiverId().equals(userId));
+    }
+}
@@ -0,0 +1,375 @@
+package com.shelfswap.index;
+
+import com.shelfswap.events.ShelfBatchEvent;
+import com.shelfswap.events.ShelfChangeEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds multi-party trade loops (A gets from B, B gets from C, C gets from A) through a
+ * user on the directed "has a book I want" graph held by {@link SwapMatchIndex}.
+ * Searches are bounded by cycle length, result count and a wall-clock budget, and
+ * fan out over the first hop with fork/join. Only copying the edges a search can use
+ * and naming the books of the loops it found hold the index's read lock; the search
+ * itself runs on the copy, so shelf changes are not held up behind it.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TradeCycleFinder {
+    private static final int SEQUENTIAL_THRESHOLD = 16;
+    private static final int[] NO_EDGES = new int[0];
+
+    private final SwapMatchIndex swapMatchIndex;
+
+    @Value("${shelfswap.cycles.max-length}")
+    private int maxLength;
+
+    @Value("${shelfswap.cycles.max-results}")
+    private int maxResults;
+
+    @Value("${shelfswap.cycles.time-budget-ms}")
+    private long timeBudgetMs;
+
+    @Value("${shelfswap.cycles.parallelism}")
+    private int parallelism;
+
+    @Value("${shelfswap.cycles.cache.max-users}")
+    private int maxCachedUsers;
+
+    @Value("${shelfswap.cycles.cache.partial-ttl-ms}")
+    private long partialTtlMs;
+
+    // LRU by access; guarded by itself, together with cachedUsersByMember.
+    private final LinkedHashMap<UUID, CachedCycles> cyclesByUser = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<UUID, Set<UUID>> cachedUsersByMember = new HashMap<>();
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    void start() {
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @PreDestroy
+    void stop() {
+        pool.shutdownNow();
+    }
+
+    public List<TradeCycle> findCycles(UUID userId) {
+        if (!swapMatchIndex.isReady()) {
+            return List.of();
+        }
+        synchronized (cyclesByUser) {
+            CachedCycles cached = cyclesByUser.get(userId);
+            if (cached != null && cached.expiresAt() > System.currentTimeMillis()) {
+                return cached.cycles();
+            }
+        }
+        SearchResult result = search(userId);
+        remember(userId, result);
+        return result.cycles();
+    }
+
+    /*
+     * Any cycle that loses an edge contains the changed user, so cached results naming
+     * them are dropped. Any cycle that gains an edge also contains the changed user, so
+     * searching from them finds every new loop and tells us whose results are stale.
+     */
+    @TransactionalEventListener
+    @Order(10)
+    public void onShelfChange(ShelfChangeEvent event) {
+        refresh(event.getUserId(), event.isAdded());
+    }
+
+    // A batch only changes its user's edges, so one eviction and one search cover it.
+    @TransactionalEventListener
+    @Order(10)
+    public void onShelfBatch(ShelfBatchEvent event) {
+        refresh(event.getUserId(), true);
+    }
+
+    private void refresh(UUID changed, boolean added) {
+        evictInvolving(changed);
+        if (added && swapMatchIndex.isReady()) {
+            pool.execute(() -> {
+                SearchResult result = search(changed);
+                synchronized (cyclesByUser) {
+                    result.cycles().forEach(cycle -> cycle.getLegs().forEach(leg -> forget(leg.getGiverId())));
+                }
+                remember(changed, result);
+            });
+        }
+    }
+
+    private SearchResult search(UUID userId) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudgetMs);
+        Neighbourhood neighbourhood = swapMatchIndex.withReadLock(() -> copyNeighbourhood(userId, deadline));
+        if (neighbourhood == null) {
+            return new SearchResult(List.of(), true);
+        }
+
+        Search search = new Search(neighbourhood, deadline);
+        pool.invoke(new FirstHopTask(search, neighbourhood.firstHops(), 0, neighbourhood.firstHops().length));
+        boolean complete = neighbourhood.complete() && !search.timedOut.get();
+        if (!complete) {
+            log.warn("Trade cycle search for user {} hit its {} ms budget", userId, timeBudgetMs);
+        }
+        List<TradeCycle> cycles = swapMatchIndex.withReadLock(() -> toCycles(search.paths, neighbourhood));
+        return new SearchResult(cycles, complete);
+    }
+
+    /*
+     * Copies the out-edges a search from the user can follow: from each first hop to the
+     * users that close a loop or lead back to one, and from those second hops to the
+     * closing users. Users are kept by id too, in case the index is rebuilt meanwhile.
+     */
+    private Neighbourhood copyNeighbourhood(UUID userId, long deadline) {
+        int start = swapMatchIndex.userIndex(userId);
+        if (start < 0) {
+            return null;
+        }
+        BitSet closing = swapMatchIndex.inNeighbours(start);
+        BitSet firstHops = swapMatchIndex.outNeighbours(start);
+        if (closing.isEmpty() || firstHops.isEmpty()) {
+            return null;
+        }
+        BitSet twoHopsBack = new BitSet();
+        if (maxLength >= 4) {
+            closing.stream().forEach(user -> twoHopsBack.or(swapMatchIndex.inNeighbours(user)));
+        }
+        BitSet useful = (BitSet) closing.clone();
+        useful.or(twoHopsBack);
+        useful.clear(start);
+
+        Map<Integer, int[]> edges = new HashMap<>();
+        BitSet secondHops = new BitSet();
+        boolean complete = true;
+        for (int first = firstHops.nextSetBit(0); first >= 0; first = firstHops.nextSetBit(first + 1)) {
+            if (System.nanoTime() > deadline) {
+                complete = false;
+                break;
+            }
+            BitSet out = swapMatchIndex.outNeighbours(first);
+            out.and(useful);
+            edges.put(first, out.stream().toArray());
+            out.and(twoHopsBack);
+            secondHops.or(out);
+        }
+        for (int second = secondHops.nextSetBit(0); second >= 0 && complete; second = secondHops.nextSetBit(second + 1)) {
+            if (System.nanoTime() > deadline) {
+                complete = false;
+                break;
+            }
+            if (!edges.containsKey(second)) {
+                BitSet out = swapMatchIndex.outNeighbours(second);
+                out.and(closing);
+                out.clear(start);
+                edges.put(second, out.stream().toArray());
+            }
+        }
+
+        Map<Integer, UUID> users = new HashMap<>();
+        users.put(start, userId);
+        edges.keySet().forEach(user -> users.put(user, swapMatchIndex.userAt(user)));
+        closing.stream().forEach(user -> users.put(user, swapMatchIndex.userAt(user)));
+        return new Neighbourhood(start, closing, twoHopsBack, firstHops.stream().toArray(), edges, users, complete);
+    }
+
+    // Each user in a path receives from the next one; the last receives from the start.
+    private List<TradeCycle> toCycles(Collection<int[]> paths, Neighbourhood neighbourhood) {
+        List<TradeCycle> cycles = new ArrayList<>(paths.size());
+        for (int[] path : paths) {
+            TradeCycle cycle = toCycle(path, neighbourhood.users());
+            if (cycle != null) {
+                cycles.add(cycle);
+            }
+        }
+        return List.copyOf(cycles);
+    }
+
+    // Null when a leg no longer holds, because a list changed after the edges were copied.
+    private TradeCycle toCycle(int[] path, Map<Integer, UUID> users) {
+        List<TradeLeg> legs = new ArrayList<>(path.length);
+        for (int i = 0; i < path.length; i++) {
+            UUID receiver = users.get(path[i]);
+            UUID giver = users.get(path[(i + 1) % path.length]);
+            int receiverIndex = swapMatchIndex.userIndex(receiver);
+            int giverIndex = swapMatchIndex.userIndex(giver);
+            int book = receiverIndex < 0 || giverIndex < 0 ? -1 : swapMatchIndex.sharedBook(receiverIndex, giverIndex);
+            if (book < 0) {
+                return null;
+            }
+            legs.add(new TradeLeg(giver, receiver, swapMatchIndex.bookAt(book)));
+        }
+        return new TradeCycle(legs);
+    }
+
+    // A search cut off by its budget may have missed loops, so it is only kept briefly.
+    private void remember(UUID userId, SearchResult result) {
+        long expiresAt = result.complete() ? Long.MAX_VALUE : System.currentTimeMillis() + partialTtlMs;
+        synchronized (cyclesByUser) {
+            forget(userId);
+            cyclesByUser.put(userId, new CachedCycles(result.cycles(), expiresAt));
+            for (TradeCycle cycle : result.cycles()) {
+                for (TradeLeg leg : cycle.getLegs()) {
+                    cachedUsersByMember.computeIfAbsent(leg.getGiverId(), id -> new HashSet<>()).add(userId);
+                }
+            }
+            Iterator<Map.Entry<UUID, CachedCycles>> eldest = cyclesByUser.entrySet().iterator();
+            while (cyclesByUser.size() > maxCachedUsers && eldest.hasNext()) {
+                Map.Entry<UUID, CachedCycles> evicted = eldest.next();
+                eldest.remove();
+                unlinkMembers(evicted.getKey(), evicted.getValue());
+            }
+        }
+    }
+
+    private void evictInvolving(UUID userId) {
+        synchronized (cyclesByUser) {
+            forget(userId);
+            Set<UUID> cachedUsers = cachedUsersByMember.get(userId);
+            if (cachedUsers != null) {
+                List.copyOf(cachedUsers).forEach(this::forget);
+            }
+        }
+    }
+
+    // Callers hold the cyclesByUser lock.
+    private void forget(UUID userId) {
+        unlinkMembers(userId, cyclesByUser.remove(userId));
+    }
+
+    private void unlinkMembers(UUID userId, CachedCycles cached) {
+        if (cached == null) {
+            return;
+        }
+        for (TradeCycle cycle : cached.cycles()) {
+            for (TradeLeg leg : cycle.getLegs()) {
+                Set<UUID> cachedUsers = cachedUsersByMember.get(leg.getGiverId());
+                if (cachedUsers != null && cachedUsers.remove(userId) && cachedUsers.isEmpty()) {
+                    cachedUsersByMember.remove(leg.getGiverId());
+                }
+            }
+        }
+    }
+
+    private record Neighbourhood(int start, BitSet closing, BitSet twoHopsBack, int[] firstHops,
+                                 Map<Integer, int[]> edges, Map<Integer, UUID> users, boolean complete) {
+    }
+
+    private record SearchResult(List<TradeCycle> cycles, boolean complete) {
+    }
+
+    private record CachedCycles(List<TradeCycle> cycles, long expiresAt) {
+    }
+
+    private class Search {
+        private final Neighbourhood neighbourhood;
+        private final long deadline;
+        private final Queue<int[]> paths = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger found = new AtomicInteger();
+        private final AtomicBoolean timedOut = new AtomicBoolean();
+
+        Search(Neighbourhood neighbourhood, long deadline) {
+            this.neighbourhood = neighbourhood;
+            this.deadline = deadline;
+        }
+
+        boolean exhausted() {
+            if (found.get() >= maxResults) {
+                return true;
+            }
+            if (System.nanoTime() > deadline) {
+                timedOut.set(true);
+                return true;
+            }
+            return false;
+        }
+
+        void searchFrom(int first) {
+            int start = neighbourhood.start();
+            int[] seconds = neighbourhood.edges().getOrDefault(first, NO_EDGES);
+            for (int i = 0; i < seconds.length && !exhausted(); i++) {
+                if (neighbourhood.closing().get(seconds[i])) {
+                    emit(start, first, seconds[i]);
+                }
+            }
+            if (maxLength < 4) {
+                return;
+            }
+
+            for (int i = 0; i < seconds.length && !exhausted(); i++) {
+                int second = seconds[i];
+                if (!neighbourhood.twoHopsBack().get(second)) {
+                    continue;
+                }
+                int[] lasts = neighbourhood.edges().getOrDefault(second, NO_EDGES);
+                for (int j = 0; j < lasts.length && !exhausted(); j++) {
+                    if (lasts[j] != first && neighbourhood.closing().get(lasts[j])) {
+                        emit(start, first, second, lasts[j]);
+                    }
+                }
+            }
+        }
+
+        private void emit(int... path) {
+            if (found.incrementAndGet() <= maxResults) {
+                paths.add(path);
+            }
+        }
+    }
+
+    private static class FirstHopTask extends RecursiveAction {
+        private final Search search;
+        private final int[] firstHops;
+        private final int from;
+        private final int to;
+
+        FirstHopTask(Search search, int[] firstHops, int from, int to) {
+            this.search = search;
+            this.firstHops = firstHops;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                for (int i = from; i < to && !search.exhausted(); i++) {
+                    search.searchFrom(firstHops[i]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(
+                    new FirstHopTask(search, firstHops, from, middle),
+                    new FirstHopTask(search, firstHops, middle, to)
+            );
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.shelfswap.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+@Getter
+@AllArgsConstructor
+public class TradeLeg {
+    private final UUID giverId;
+    private final UUID receiverId;
+    private final String bookId;
+}
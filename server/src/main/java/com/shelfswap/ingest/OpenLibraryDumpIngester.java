@@ -0,0 +1,333 @@
+package com.shelfswap.ingest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shelfswap.cache.BookCatalogCache;
+import com.shelfswap.dtos.BookAddRequest;
+import com.shelfswap.entities.IngestCheckpoint;
+import com.shelfswap.repositories.IngestCheckpointRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Loads an Open Library dump (the tab-separated ol_dump_*.txt.gz files, or gzipped JSON
+ * lines) into the books catalog. Author records go to the ol_authors staging table and
+ * work records become books, so the authors dump should be ingested before the works dump.
+ * The catalog is keyed by work, so an edition record adds its work, titled and authored
+ * as the edition, unless the work is already stored; ingest works before editions so a
+ * work's own record wins.
+ * <p>
+ * One thread streams the file in batches of lines through a bounded queue to a pool that
+ * parses them and inserts each batch as a single array-bound statement. The number of
+ * lines behind the last contiguous committed batch is checkpointed, so a rerun on the same
+ * file skips what is already loaded. Gzip cannot be seeked, so the skipped lines are still
+ * decompressed, but only scanned for line ends rather than decoded.
+ * Run without the web server, the process exits when done:
+ * {@code java -jar shelfswap.jar --spring.main.web-application-type=none --shelfswap.ingest.dump=ol_dump_works.txt.gz}
+ */
+@Component
+@ConditionalOnProperty("shelfswap.ingest.dump")
+@RequiredArgsConstructor
+@Slf4j
+public class OpenLibraryDumpIngester implements ApplicationRunner {
+    private static final int MAX_TEXT_LENGTH = 255;
+    private static final int READ_BUFFER = 1 << 16;
+    private static final String UNKNOWN_AUTHOR = "Unknown author";
+    private static final Batch END = new Batch(-1, 0, List.of());
+
+    private static final String UPSERT_AUTHORS = """
+        INSERT INTO ol_authors (id, name)
+        SELECT * FROM unnest(?::text[], ?::text[])
+        ON CONFLICT (id) DO UPDATE SET name = EXCLUDED.name
+    """;
+    private static final String INSERT_WORKS = """
+        INSERT INTO books (id, title, author, cover_url, created_at)
+        SELECT w.id, w.title, COALESCE(a.name, ?), w.cover_url, now()
+        FROM unnest(?::text[], ?::text[], ?::text[], ?::text[]) AS w(id, title, author_id, cover_url)
+        LEFT JOIN ol_authors a ON a.id = w.author_id
+        ON CONFLICT (id) DO NOTHING
+    """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final IngestCheckpointRepository ingestCheckpointRepository;
+    private final BookCatalogCache bookCatalogCache;
+    private final ObjectMapper objectMapper;
+    private final ConfigurableApplicationContext context;
+
+    @Value("${shelfswap.ingest.dump}")
+    private String dump;
+
+    @Value("${shelfswap.ingest.batch-size}")
+    private int batchSize;
+
+    @Value("${shelfswap.ingest.parallelism}")
+    private int parallelism;
+
+    private final LongAdder works = new LongAdder();
+    private final LongAdder editions = new LongAdder();
+    private final LongAdder authors = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Path path = Path.of(dump);
+        String dumpName = path.getFileName().toString();
+        long resumeFrom = ingestCheckpointRepository.findById(dumpName)
+                .map(IngestCheckpoint::getLinesDone)
+                .orElse(0L);
+        log.info("Ingesting {} from line {}", path, resumeFrom);
+
+        long start = System.currentTimeMillis();
+        Checkpointer checkpointer = new Checkpointer(dumpName);
+        BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(parallelism * 2);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+            running.add(workers.submit(() -> {
+                try {
+                    Batch batch;
+                    while ((batch = queue.take()) != END) {
+                        ingest(batch);
+                        checkpointer.completed(batch);
+                    }
+                } catch (Exception ex) {
+                    failure.compareAndSet(null, ex);
+                }
+            }));
+        }
+
+        try (BufferedReader reader = open(path, resumeFrom)) {
+            long line = resumeFrom;
+            long sequence = 0;
+            List<String> lines = new ArrayList<>(batchSize);
+            String next;
+            while ((next = reader.readLine()) != null) {
+                lines.add(next);
+                line++;
+                if (lines.size() == batchSize) {
+                    enqueue(queue, new Batch(sequence++, line, lines), failure);
+                    lines = new ArrayList<>(batchSize);
+                }
+            }
+            if (!lines.isEmpty()) {
+                enqueue(queue, new Batch(sequence, line, lines), failure);
+            }
+        } finally {
+            for (int i = 0; i < parallelism; i++) {
+                while (!queue.offer(END, 1, TimeUnit.SECONDS)) {
+                    if (running.stream().allMatch(Future::isDone)) {
+                        break;
+                    }
+                }
+            }
+            workers.shutdown();
+            workers.awaitTermination(1, TimeUnit.HOURS);
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        log.info("Ingested {}: {} works, {} editions, {} authors, {} other records skipped in {} s", dumpName,
+                works.sum(), editions.sum(), authors.sum(), skipped.sum(), (System.currentTimeMillis() - start) / 1000);
+        if (!(context instanceof WebServerApplicationContext)) {
+            // Servers confirm filter misses with the database, so they find these books before their next reload.
+            System.exit(SpringApplication.exit(context));
+        }
+        bookCatalogCache.loadKnownIds();
+    }
+
+    private void enqueue(BlockingQueue<Batch> queue, Batch batch, AtomicReference<Exception> failure)
+            throws Exception {
+        while (!queue.offer(batch, 1, TimeUnit.SECONDS)) {
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+        }
+    }
+
+    // Gzip cannot be seeked or mapped, so the file is read sequentially through an NIO channel.
+    private static BufferedReader open(Path path, long skipLines) throws IOException {
+        InputStream input = Channels.newInputStream(FileChannel.open(path, StandardOpenOption.READ));
+        if (path.toString().endsWith(".gz")) {
+            input = new GZIPInputStream(input, READ_BUFFER);
+        }
+        return new BufferedReader(new InputStreamReader(skip(input, skipLines), StandardCharsets.UTF_8), 1 << 20);
+    }
+
+    // Counts line ends in the raw bytes, which is safe for UTF-8 and saves decoding the lines.
+    private static InputStream skip(InputStream input, long lines) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(input, READ_BUFFER);
+        byte[] buffer = new byte[READ_BUFFER];
+        int read;
+        while (lines > 0 && (read = pushback.read(buffer)) > 0) {
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == '\n' && --lines == 0) {
+                    pushback.unread(buffer, i + 1, read - i - 1);
+                    break;
+                }
+            }
+        }
+        return pushback;
+    }
+
+    private void ingest(Batch batch) {
+        Map<String, String> authorNames = new LinkedHashMap<>();
+        Map<String, String[]> workRows = new LinkedHashMap<>();
+        for (String line : batch.lines()) {
+            parse(line, authorNames, workRows);
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!authorNames.isEmpty()) {
+                jdbcTemplate.update(UPSERT_AUTHORS, ps -> {
+                    Connection connection = ps.getConnection();
+                    ps.setArray(1, textArray(connection, authorNames.keySet().toArray(String[]::new)));
+                    ps.setArray(2, textArray(connection, authorNames.values().toArray(String[]::new)));
+                });
+            }
+            if (!workRows.isEmpty()) {
+                jdbcTemplate.update(INSERT_WORKS, ps -> {
+                    Connection connection = ps.getConnection();
+                    ps.setString(1, UNKNOWN_AUTHOR);
+                    for (int column = 0; column < 4; column++) {
+                        int index = column;
+                        String[] values = workRows.values().stream().map(row -> row[index]).toArray(String[]::new);
+                        ps.setArray(column + 2, textArray(connection, values));
+                    }
+                });
+            }
+        });
+        authors.add(authorNames.size());
+        works.add(workRows.size());
+    }
+
+    // Work rows are {id, title, first author's ID, cover URL}.
+    private void parse(String line, Map<String, String> authorNames, Map<String, String[]> workRows) {
+        int json = line.indexOf('{');
+        if (json < 0) {
+            skipped.increment();
+            return;
+        }
+        JsonNode record;
+        try {
+            record = objectMapper.readTree(line.substring(json));
+        } catch (JsonProcessingException ex) {
+            skipped.increment();
+            return;
+        }
+
+        String key = record.path("key").asText("");
+        String id = BookAddRequest.extractOLKey(key);
+        if (id != null && key.startsWith("/authors/") && record.hasNonNull("name")) {
+            authorNames.put(id, truncate(record.get("name").asText()));
+        } else if (id != null && key.startsWith("/works/") && record.hasNonNull("title")) {
+            String authorId = BookAddRequest.extractOLKey(record.path("authors").path(0).path("author").path("key").asText(null));
+            workRows.put(id, new String[]{id, truncate(record.get("title").asText()), authorId, coverUrl(record)});
+        } else if (id != null && key.startsWith("/books/") && record.hasNonNull("title")) {
+            String workId = BookAddRequest.extractOLKey(record.path("works").path(0).path("key").asText(null));
+            if (workId == null) {
+                skipped.increment();
+                return;
+            }
+            String authorId = BookAddRequest.extractOLKey(record.path("authors").path(0).path("key").asText(null));
+            // Several editions of one work usually sit together; the first one stands for it.
+            workRows.putIfAbsent(workId, new String[]{workId, truncate(record.get("title").asText()), authorId, coverUrl(record)});
+            editions.increment();
+        } else {
+            skipped.increment();
+        }
+    }
+
+    private static String coverUrl(JsonNode record) {
+        for (JsonNode cover : record.path("covers")) {
+            if (cover.asLong() > 0) {
+                return String.format("https://covers.openlibrary.org/b/id/%d-M.jpg", cover.asLong());
+            }
+        }
+        return null;
+    }
+
+    private static Array textArray(Connection connection, String[] values) throws SQLException {
+        return connection.createArrayOf("text", values);
+    }
+
+    private static String truncate(String value) {
+        return value.length() <= MAX_TEXT_LENGTH ? value : value.substring(0, MAX_TEXT_LENGTH);
+    }
+
+    // endLine is the number of lines of the file read once this batch is done.
+    private record Batch(long sequence, long endLine, List<String> lines) {
+    }
+
+    /*
+     * Batches commit out of order, so only the end of the longest run of committed
+     * batches from the start is saved; anything after it is redone on resume, which the
+     * conflict clauses make harmless.
+     */
+    private class Checkpointer {
+        private final String dumpName;
+        private final Map<Long, Long> finished = new HashMap<>();
+        private long nextSequence = 0;
+
+        Checkpointer(String dumpName) {
+            this.dumpName = dumpName;
+        }
+
+        synchronized void completed(Batch batch) {
+            finished.put(batch.sequence(), batch.endLine());
+            Long endLine = null;
+            while (finished.containsKey(nextSequence)) {
+                endLine = finished.remove(nextSequence++);
+            }
+            if (endLine != null) {
+                ingestCheckpointRepository.save(IngestCheckpoint.builder()
+                        .dumpName(dumpName)
+                        .linesDone(endLine)
+                        .updatedAt(LocalDateTime.now())
+                        .build());
+            }
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.shelfswap.mappers;
 
 import com.shelfswap.dtos.BookDTO;
+import com.shelfswap.dtos.BookSearchResult;
 import com.shelfswap.entities.Book;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.factory.Mappers;
 
 @Mapper(componentModel = "spring")
@@ -12,4 +14,7 @@ public interface BookMapper {
     BookDTO toDTO(Book book);
 
     Book toEntity(BookDTO bookDTO);
+
+    @Mapping(target = "users", ignore = true)
+    BookSearchResult toSearchResult(Book book);
 }
@@ -0,0 +1,289 @@
+package com.shelfswap.popularity;
+
+import com.shelfswap.dtos.BookCount;
+import com.shelfswap.dtos.BookPopularity;
+import com.shelfswap.entities.BookPopularitySummary;
+import com.shelfswap.events.ShelfBatchEvent;
+import com.shelfswap.events.ShelfChangeEvent;
+import com.shelfswap.repositories.BookPopularityRepository;
+import com.shelfswap.repositories.ShelfBookRepository;
+import com.shelfswap.repositories.WishlistRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Per-book shelf and wishlist counts kept in memory from {@link ShelfChangeEvent}s,
+ * so popularity requests never need a COUNT over the list tables. The counts are
+ * reconciled with the list tables on startup and periodically, which repairs changes
+ * lost in a crash between flushes and picks up changes made through other nodes. The
+ * trending score is the number of net adds decayed with a configurable half-life,
+ * kept with forward decay (each add weighs 2^(age of process / half-life)) so it is a
+ * plain sum as well. Changed books are flushed to book_popularity periodically and
+ * on shutdown, and the trending scores are read back from there on startup;
+ * leaderboards are recomputed on every flush.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookPopularityCounters {
+    private static final String UPSERT_SUMMARY = """
+        INSERT INTO book_popularity (book_id, shelf_count, wishlist_count, trending_score, updated_at)
+        VALUES (?, ?, ?, ?, ?)
+        ON CONFLICT (book_id) DO UPDATE
+        SET shelf_count = EXCLUDED.shelf_count,
+            wishlist_count = EXCLUDED.wishlist_count,
+            trending_score = EXCLUDED.trending_score,
+            updated_at = EXCLUDED.updated_at
+    """;
+    private static final int FLUSH_BATCH_SIZE = 1_000;
+
+    private final BookPopularityRepository bookPopularityRepository;
+    private final ShelfBookRepository shelfBookRepository;
+    private final WishlistRepository wishlistRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${shelfswap.popularity.trending-half-life-hours}")
+    private long halfLifeHours;
+
+    @Value("${shelfswap.popularity.leaderboard-size}")
+    private int leaderboardSize;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    // Forward decay landmark; weights grow from 1 here, which stays far from overflow for centuries.
+    private final long landmark = System.currentTimeMillis();
+    private volatile boolean ready;
+    private volatile Map<PopularityRanking, List<BookPopularity>> leaderboards = Map.of();
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void restore() {
+        long start = System.currentTimeMillis();
+        LongAdder restored = new LongAdder();
+        try (Stream<BookPopularitySummary> summaries = bookPopularityRepository.streamAll()) {
+            summaries.forEach(summary -> {
+                restore(summary);
+                restored.increment();
+            });
+        }
+        reconcile();
+        ready = true;
+        recomputeLeaderboards();
+        log.info("Popularity counters for {} books restored in {} ms ({} trending scores)", counters.size(),
+                System.currentTimeMillis() - start, restored.sum());
+    }
+
+    /*
+     * Moves each count by its difference from the list tables rather than setting it, so
+     * a change applied while the tables are counted is kept; if its row was already in
+     * the count it is counted twice until the next reconcile.
+     */
+    @Scheduled(
+            initialDelayString = "${shelfswap.popularity.reconcile-ms}",
+            fixedDelayString = "${shelfswap.popularity.reconcile-ms}"
+    )
+    @Transactional(readOnly = true)
+    public void reconcile() {
+        long start = System.currentTimeMillis();
+        Map<String, long[]> seen = new HashMap<>();
+        counters.forEach((bookId, counter) -> seen.put(bookId, new long[]{counter.shelved.sum(), counter.wished.sum()}));
+        Map<String, long[]> stored = new HashMap<>();
+        try (Stream<BookCount> shelved = shelfBookRepository.streamBookCounts()) {
+            shelved.forEach(count -> stored.computeIfAbsent(count.getBookId(), id -> new long[2])[0] = count.getCount());
+        }
+        try (Stream<BookCount> wished = wishlistRepository.streamBookCounts()) {
+            wished.forEach(count -> stored.computeIfAbsent(count.getBookId(), id -> new long[2])[1] = count.getCount());
+        }
+
+        long[] none = new long[2];
+        Set<String> bookIds = new HashSet<>(seen.keySet());
+        bookIds.addAll(stored.keySet());
+        int corrected = 0;
+        for (String bookId : bookIds) {
+            long[] before = seen.getOrDefault(bookId, none);
+            long[] actual = stored.getOrDefault(bookId, none);
+            if (before[0] != actual[0] || before[1] != actual[1]) {
+                Counter counter = counter(bookId);
+                counter.shelved.add(actual[0] - before[0]);
+                counter.wished.add(actual[1] - before[1]);
+                dirty.add(bookId);
+                corrected++;
+            }
+        }
+        log.info("Reconciled popularity counts of {} books, corrected {} in {} ms",
+                bookIds.size(), corrected, System.currentTimeMillis() - start);
+    }
+
+    @TransactionalEventListener
+    public void onShelfChange(ShelfChangeEvent event) {
+        Counter counter = counter(event.getBookId());
+        long delta = event.isAdded() ? 1 : -1;
+        (event.isShelf() ? counter.shelved : counter.wished).add(delta);
+        counter.trend.add(delta * weightAt(System.currentTimeMillis()));
+        dirty.add(event.getBookId());
+    }
+
+    @TransactionalEventListener
+    public void onShelfBatch(ShelfBatchEvent event) {
+        event.changes().forEach(this::onShelfChange);
+    }
+
+    public BookPopularity get(String bookId) {
+        Counter counter = counters.get(bookId);
+        return counter == null
+                ? toPopularity(bookId, 0, 0, 0)
+                : toPopularity(bookId, counter, System.currentTimeMillis());
+    }
+
+    public List<BookPopularity> leaderboard(PopularityRanking ranking, int limit) {
+        List<BookPopularity> board = leaderboards.getOrDefault(ranking, List.of());
+        return board.subList(0, Math.min(limit, board.size()));
+    }
+
+    @Scheduled(
+            initialDelayString = "${shelfswap.popularity.flush-ms}",
+            fixedDelayString = "${shelfswap.popularity.flush-ms}"
+    )
+    public void flush() {
+        if (!ready) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Timestamp updatedAt = Timestamp.from(Instant.ofEpochMilli(now));
+        List<BookPopularity> batch = new ArrayList<>(FLUSH_BATCH_SIZE);
+        int flushed = 0;
+        // Ids are removed before their counts are read, so a change racing the flush is written next time.
+        for (Iterator<String> ids = dirty.iterator(); ids.hasNext(); ) {
+            String bookId = ids.next();
+            ids.remove();
+            batch.add(get(bookId));
+            if (batch.size() == FLUSH_BATCH_SIZE) {
+                flushed += write(batch, updatedAt);
+                batch.clear();
+            }
+        }
+        flushed += write(batch, updatedAt);
+        recomputeLeaderboards();
+        if (flushed > 0) {
+            log.debug("Flushed popularity of {} books in {} ms", flushed, System.currentTimeMillis() - now);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        flush();
+    }
+
+    private int write(List<BookPopularity> batch, Timestamp updatedAt) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(UPSERT_SUMMARY, batch, batch.size(), (ps, popularity) -> {
+            ps.setString(1, popularity.getBookId());
+            ps.setLong(2, popularity.getShelfCount());
+            ps.setLong(3, popularity.getWishlistCount());
+            ps.setDouble(4, popularity.getTrendingScore());
+            ps.setTimestamp(5, updatedAt);
+        });
+        return batch.size();
+    }
+
+    private void recomputeLeaderboards() {
+        long now = System.currentTimeMillis();
+        Map<PopularityRanking, PriorityQueue<BookPopularity>> heaps = new EnumMap<>(PopularityRanking.class);
+        for (PopularityRanking ranking : PopularityRanking.values()) {
+            // Min-heap on rank: the head is the weakest book kept.
+            heaps.put(ranking, new PriorityQueue<>(leaderboardSize + 1, ranking.order().reversed()));
+        }
+        counters.forEach((bookId, counter) -> {
+            BookPopularity popularity = toPopularity(bookId, counter, now);
+            heaps.forEach((ranking, heap) -> {
+                heap.add(popularity);
+                if (heap.size() > leaderboardSize) {
+                    heap.poll();
+                }
+            });
+        });
+
+        Map<PopularityRanking, List<BookPopularity>> fresh = new EnumMap<>(PopularityRanking.class);
+        heaps.forEach((ranking, heap) -> {
+            List<BookPopularity> board = new ArrayList<>(heap);
+            board.sort(ranking.order());
+            fresh.put(ranking, Collections.unmodifiableList(board));
+        });
+        leaderboards = fresh;
+    }
+
+    // Only the trending score; the counts come from reconcile.
+    private void restore(BookPopularitySummary summary) {
+        Counter counter = counter(summary.getBookId());
+        long flushedAt = summary.getUpdatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        counter.trend.add(summary.getTrendingScore() * weightAt(flushedAt));
+    }
+
+    private Counter counter(String bookId) {
+        return counters.computeIfAbsent(bookId, id -> new Counter());
+    }
+
+    private double weightAt(long epochMillis) {
+        return Math.pow(2, (double) (epochMillis - landmark) / TimeUnit.HOURS.toMillis(halfLifeHours));
+    }
+
+    private BookPopularity toPopularity(String bookId, Counter counter, long now) {
+        // Adds and removes can land in the adders out of order, so a sum may dip below zero briefly.
+        return toPopularity(
+                bookId,
+                Math.max(counter.shelved.sum(), 0),
+                Math.max(counter.wished.sum(), 0),
+                Math.max(counter.trend.sum() / weightAt(now), 0)
+        );
+    }
+
+    private static BookPopularity toPopularity(String bookId, long shelfCount, long wishlistCount, double trending) {
+        return BookPopularity.builder()
+                .bookId(bookId)
+                .shelfCount(shelfCount)
+                .wishlistCount(wishlistCount)
+                .demandRatio((double) wishlistCount / Math.max(shelfCount, 1))
+                .trendingScore(trending)
+                .build();
+    }
+
+    private static class Counter {
+        private final LongAdder shelved = new LongAdder();
+        private final LongAdder wished = new LongAdder();
+        private final DoubleAdder trend = new DoubleAdder();
+    }
+}
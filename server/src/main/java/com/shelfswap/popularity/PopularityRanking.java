@@ -0,0 +1,22 @@
+package com.shelfswap.popularity;
+
+import com.shelfswap.dtos.BookPopularity;
+
+import java.util.Comparator;
+
+public enum PopularityRanking {
+    MOST_WANTED(Comparator.comparingLong(BookPopularity::getWishlistCount)),
+    MOST_SHELVED(Comparator.comparingLong(BookPopularity::getShelfCount)),
+    TRENDING(Comparator.comparingDouble(BookPopularity::getTrendingScore));
+
+    // Best first, ties broken by book ID so pages are stable.
+    private final Comparator<BookPopularity> order;
+
+    PopularityRanking(Comparator<BookPopularity> order) {
+        this.order = order.reversed().thenComparing(BookPopularity::getBookId);
+    }
+
+    public Comparator<BookPopularity> order() {
+        return order;
+    }
+}
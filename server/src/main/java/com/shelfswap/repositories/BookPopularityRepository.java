@@ -0,0 +1,15 @@
+package com.shelfswap.repositories;
+
+import com.shelfswap.entities.BookPopularitySummary;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.util.stream.Stream;
+
+public interface BookPopularityRepository extends JpaRepository<BookPopularitySummary, String> {
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT p FROM BookPopularitySummary p")
+    Stream<BookPopularitySummary> streamAll();
+}
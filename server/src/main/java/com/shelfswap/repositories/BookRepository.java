@@ -1,13 +1,20 @@
 package com.shelfswap.repositories;
 
 import com.shelfswap.dtos.BookDTO;
+import com.shelfswap.dtos.MatchedBook;
 import com.shelfswap.entities.Book;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface BookRepository extends JpaRepository<Book, String> {
     @Query("""
@@ -34,6 +41,30 @@ public interface BookRepository extends JpaRepository<Book, String> {
     """)
     List<BookDTO> findMatchedBooksIOwn(@Param("myId") UUID myId, @Param("theirId") UUID theirId);
 
+    @Query("""
+        SELECT new com.shelfswap.dtos.MatchedBook (
+            s.user.id, b.id, b.title, b.author, b.coverUrl
+            )
+        FROM WishlistBook w
+        JOIN ShelfBook s ON s.book.id = w.book.id
+        JOIN Book b ON b.id = s.book.id
+        WHERE s.user.id IN :theirIds
+        AND w.user.id = :myId
+    """)
+    List<MatchedBook> findMatchedBooksTheyOwnByPartners(@Param("myId") UUID myId, @Param("theirIds") Collection<UUID> theirIds);
+
+    @Query("""
+        SELECT new com.shelfswap.dtos.MatchedBook (
+            w.user.id, b.id, b.title, b.author, b.coverUrl
+            )
+        FROM WishlistBook w
+        JOIN ShelfBook s ON s.book.id = w.book.id
+        JOIN Book b ON b.id = s.book.id
+        WHERE w.user.id IN :theirIds
+        AND s.user.id = :myId
+    """)
+    List<MatchedBook> findMatchedBooksIOwnByPartners(@Param("myId") UUID myId, @Param("theirIds") Collection<UUID> theirIds);
+
     @Query("""
         SELECT DISTINCT b
         FROM Book b
@@ -41,5 +72,20 @@ public interface BookRepository extends JpaRepository<Book, String> {
         WHERE LOWER(b.title) LIKE LOWER(CONCAT('%', :title, '%'))
         ORDER BY b.title
         """)
-    List<Book> findBooksByTitleContaining(@Param("title") String title);
+    List<Book> findBooksByTitleContaining(@Param("title") String title, Pageable pageable);
+
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        INSERT INTO books (id, title, author, cover_url, created_at)
+        VALUES (:id, :title, :author, :coverUrl, now())
+        ON CONFLICT (id) DO NOTHING
+    """)
+    int insertIfAbsent(@Param("id") String id,
+                       @Param("title") String title,
+                       @Param("author") String author,
+                       @Param("coverUrl") String coverUrl);
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT b.id FROM Book b")
+    Stream<String> streamAllIds();
 }
@@ -0,0 +1,7 @@
+package com.shelfswap.repositories;
+
+import com.shelfswap.entities.CompletedBackfill;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface CompletedBackfillRepository extends JpaRepository<CompletedBackfill, String> {
+}
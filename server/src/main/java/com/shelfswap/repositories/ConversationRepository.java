@@ -1,11 +1,16 @@
 package com.shelfswap.repositories;
 
+import com.shelfswap.dtos.ReadWatermark;
+import com.shelfswap.dtos.UserCount;
 import com.shelfswap.entities.Conversation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -13,23 +18,163 @@ import java.util.UUID;
 @Repository
 public interface ConversationRepository extends JpaRepository<Conversation, UUID> {
     
-    @Query("SELECT c FROM Conversation c WHERE " +
-           "(c.initiator.id = :userId OR c.recipient.id = :userId) " +
-           "ORDER BY c.lastMessageAt DESC")
-    List<Conversation> findByUserOrderByLastMessageAtDesc(@Param("userId") UUID userId);
-    
-    @Query("SELECT c FROM Conversation c WHERE " +
+    @Query("SELECT c FROM Conversation c JOIN FETCH c.initiator JOIN FETCH c.recipient WHERE " +
            "((c.initiator.id = :user1Id AND c.recipient.id = :user2Id) OR " +
            "(c.initiator.id = :user2Id AND c.recipient.id = :user1Id))")
     Optional<Conversation> findBetweenUsers(@Param("user1Id") UUID user1Id, @Param("user2Id") UUID user2Id);
     
-    @Query("SELECT c FROM Conversation c WHERE " +
-           "c.recipient.id = :userId AND c.status = 'PENDING' " +
-           "ORDER BY c.createdAt DESC")
-    List<Conversation> findPendingRequestsByRecipient(@Param("userId") UUID userId);
-    
-    @Query("SELECT c FROM Conversation c WHERE " +
-           "c.initiator.id = :userId AND c.status = 'PENDING' " +
-           "ORDER BY c.createdAt DESC")
-    List<Conversation> findPendingRequestsByInitiator(@Param("userId") UUID userId);
-}
\ No newline at end of file
+    @Query("SELECT c FROM Conversation c JOIN FETCH c.initiator JOIN FETCH c.recipient WHERE c.id IN :ids")
+    List<Conversation> findWithParticipantsByIdIn(@Param("ids") Collection<UUID> ids);
+
+    /*
+     * Keyset pages of a user's conversations in one status, newest activity first. Each side
+     * of the conversation has its own (user, status, last_message_at, id) index, so every
+     * branch is an ordered index range scan. A pending conversation's last_message_at is
+     * its creation time, since nothing can be sent until it is accepted.
+     */
+    @Query(nativeQuery = true, value = """
+        SELECT page.id
+        FROM (
+            (SELECT c.id, c.last_message_at
+             FROM conversations c
+             WHERE c.initiator_id = :userId
+             AND c.status = :status
+             AND (c.last_message_at, c.id) < (:afterLastMessageAt, :afterId)
+             ORDER BY c.last_message_at DESC, c.id DESC
+             LIMIT :limit)
+            UNION ALL
+            (SELECT c.id, c.last_message_at
+             FROM conversations c
+             WHERE c.recipient_id = :userId
+             AND c.status = :status
+             AND (c.last_message_at, c.id) < (:afterLastMessageAt, :afterId)
+             ORDER BY c.last_message_at DESC, c.id DESC
+             LIMIT :limit)
+        ) page
+        ORDER BY page.last_message_at DESC, page.id DESC
+        LIMIT :limit
+    """)
+    List<UUID> findIdsByParticipantAndStatus(@Param("userId") UUID userId,
+                                             @Param("status") String status,
+                                             @Param("afterLastMessageAt") LocalDateTime afterLastMessageAt,
+                                             @Param("afterId") UUID afterId,
+                                             @Param("limit") int limit);
+
+    @Query(nativeQuery = true, value = """
+        SELECT c.id
+        FROM conversations c
+        WHERE c.recipient_id = :userId
+        AND c.status = :status
+        AND (c.last_message_at, c.id) < (:afterLastMessageAt, :afterId)
+        ORDER BY c.last_message_at DESC, c.id DESC
+        LIMIT :limit
+    """)
+    List<UUID> findIdsByRecipientAndStatus(@Param("userId") UUID userId,
+                                           @Param("status") String status,
+                                           @Param("afterLastMessageAt") LocalDateTime afterLastMessageAt,
+                                           @Param("afterId") UUID afterId,
+                                           @Param("limit") int limit);
+
+    @Query(nativeQuery = true, value = """
+        SELECT c.id
+        FROM conversations c
+        WHERE c.initiator_id = :userId
+        AND c.status = :status
+        AND (c.last_message_at, c.id) < (:afterLastMessageAt, :afterId)
+        ORDER BY c.last_message_at DESC, c.id DESC
+        LIMIT :limit
+    """)
+    List<UUID> findIdsByInitiatorAndStatus(@Param("userId") UUID userId,
+                                           @Param("status") String status,
+                                           @Param("afterLastMessageAt") LocalDateTime afterLastMessageAt,
+                                           @Param("afterId") UUID afterId,
+                                           @Param("limit") int limit);
+
+    /*
+     * Locks the row for a new message. Messages take their sentAt after this, strictly
+     * after the latest one, so (sent_at, id) order is the order they commit in and a
+     * message can never commit below a read watermark already set past it.
+     */
+    @Query(nativeQuery = true, value = """
+        SELECT last_message_at
+        FROM conversations
+        WHERE id = :conversationId
+        FOR UPDATE
+    """)
+    LocalDateTime lockForMessage(@Param("conversationId") UUID conversationId);
+
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        UPDATE conversations
+        SET last_message_preview = :preview,
+            last_message_sender_id = :senderId,
+            last_message_at = :sentAt,
+            last_message_id = :messageId,
+            initiator_unread_count = initiator_unread_count
+                + CASE WHEN initiator_id = :senderId
+                    OR (initiator_last_read_at, initiator_last_read_id) >= (:sentAt, :messageId) THEN 0 ELSE 1 END,
+            recipient_unread_count = recipient_unread_count
+                + CASE WHEN recipient_id = :senderId
+                    OR (recipient_last_read_at, recipient_last_read_id) >= (:sentAt, :messageId) THEN 0 ELSE 1 END
+        WHERE id = :conversationId
+    """)
+    void recordMessage(@Param("conversationId") UUID conversationId,
+                       @Param("senderId") UUID senderId,
+                       @Param("messageId") UUID messageId,
+                       @Param("preview") String preview,
+                       @Param("sentAt") LocalDateTime sentAt);
+
+    // Moves the reader's watermark up to the latest message; a message committing later sorts after it.
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        UPDATE conversations
+        SET initiator_last_read_at = CASE
+                WHEN initiator_id = :userId AND last_message_id IS NOT NULL THEN last_message_at
+                ELSE initiator_last_read_at END,
+            initiator_last_read_id = CASE
+                WHEN initiator_id = :userId AND last_message_id IS NOT NULL THEN last_message_id
+                ELSE initiator_last_read_id END,
+            initiator_unread_count = CASE WHEN initiator_id = :userId THEN 0 ELSE initiator_unread_count END,
+            recipient_last_read_at = CASE
+                WHEN recipient_id = :userId AND last_message_id IS NOT NULL THEN last_message_at
+                ELSE recipient_last_read_at END,
+            recipient_last_read_id = CASE
+                WHEN recipient_id = :userId AND last_message_id IS NOT NULL THEN last_message_id
+                ELSE recipient_last_read_id END,
+            recipient_unread_count = CASE WHEN recipient_id = :userId THEN 0 ELSE recipient_unread_count END
+        WHERE id = :conversationId
+    """)
+    void markRead(@Param("conversationId") UUID conversationId, @Param("userId") UUID userId);
+
+    @Query(nativeQuery = true, value = """
+        SELECT CASE WHEN initiator_id = :userId THEN initiator_last_read_at ELSE recipient_last_read_at END AS "readAt",
+               CASE WHEN initiator_id = :userId THEN initiator_last_read_id ELSE recipient_last_read_id END AS "messageId"
+        FROM conversations
+        WHERE id = :conversationId
+    """)
+    ReadWatermark findReadWatermark(@Param("conversationId") UUID conversationId, @Param("userId") UUID userId);
+
+    // Locks the row, so the count returned is exactly what a following markRead clears.
+    @Query(nativeQuery = true, value = """
+        SELECT CASE WHEN initiator_id = :userId THEN initiator_unread_count ELSE recipient_unread_count END
+        FROM conversations
+        WHERE id = :conversationId
+        FOR UPDATE
+    """)
+    int lockUnreadCount(@Param("conversationId") UUID conversationId, @Param("userId") UUID userId);
+
+    @Query("SELECT new com.shelfswap.dtos.UserCount(c.initiator.id, SUM(c.initiatorUnreadCount)) " +
+           "FROM Conversation c WHERE c.initiator.id IN :userIds AND c.status = 'ACCEPTED' " +
+           "GROUP BY c.initiator.id")
+    List<UserCount> sumInitiatorUnread(@Param("userIds") Collection<UUID> userIds);
+
+    @Query("SELECT new com.shelfswap.dtos.UserCount(c.recipient.id, SUM(c.recipientUnreadCount)) " +
+           "FROM Conversation c WHERE c.recipient.id IN :userIds AND c.status = 'ACCEPTED' " +
+           "GROUP BY c.recipient.id")
+    List<UserCount> sumRecipientUnread(@Param("userIds") Collection<UUID> userIds);
+
+    @Query("SELECT new com.shelfswap.dtos.UserCount(c.recipient.id, COUNT(c)) " +
+           "FROM Conversation c WHERE c.recipient.id IN :userIds AND c.status = 'PENDING' " +
+           "GROUP BY c.recipient.id")
+    List<UserCount> countPendingReceived(@Param("userIds") Collection<UUID> userIds);
+}
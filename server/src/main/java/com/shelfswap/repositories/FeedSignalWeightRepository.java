@@ -0,0 +1,7 @@
+package com.shelfswap.repositories;
+
+import com.shelfswap.entities.FeedSignalWeight;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface FeedSignalWeightRepository extends JpaRepository<FeedSignalWeight, String> {
+}
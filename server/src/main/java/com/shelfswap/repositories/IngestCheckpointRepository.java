@@ -0,0 +1,7 @@
+package com.shelfswap.repositories;
+
+import com.shelfswap.entities.IngestCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface IngestCheckpointRepository extends JpaRepository<IngestCheckpoint, String> {
+}
@@ -1,13 +1,13 @@
 package com.shelfswap.repositories;
 
 import com.shelfswap.entities.Message;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -18,24 +18,33 @@ public interface MessageRepository extends JpaRepository<Message, UUID> {
            "ORDER BY m.sentAt ASC")
     List<Message> findByConversationIdOrderBySentAtAsc(@Param("conversationId") UUID conversationId);
     
-    @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId " +
-           "ORDER BY m.sentAt DESC")
-    List<Message> findByConversationIdOrderBySentAtDesc(@Param("conversationId") UUID conversationId, Pageable pageable);
-    
-    @Query("SELECT COUNT(m) FROM Message m WHERE " +
-           "m.conversation.id = :conversationId AND " +
-           "m.sender.id != :userId AND " +
-           "m.isRead = false")
-    int countUnreadMessages(@Param("conversationId") UUID conversationId, @Param("userId") UUID userId);
-    
-    @Modifying
-    @Query("UPDATE Message m SET m.isRead = true WHERE " +
-           "m.conversation.id = :conversationId AND " +
-           "m.sender.id != :userId AND " +
-           "m.isRead = false")
-    void markMessagesAsRead(@Param("conversationId") UUID conversationId, @Param("userId") UUID userId);
-    
-    @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId " +
-           "ORDER BY m.sentAt DESC LIMIT 1")
-    Message findLastMessageByConversationId(@Param("conversationId") UUID conversationId);
+    // Keyset pages over idx_messages_conversation_sent, so deep pages cost the same as the first.
+    @Query(nativeQuery = true, value = """
+        SELECT m.*
+        FROM messages m
+        WHERE m.conversation_id = :conversationId
+        AND (m.sent_at, m.id) < (:sentAt, :messageId)
+        ORDER BY m.sent_at DESC, m.id DESC
+        LIMIT :limit
+    """)
+    List<Message> findBefore(@Param("conversationId") UUID conversationId,
+                             @Param("sentAt") LocalDateTime sentAt,
+                             @Param("messageId") UUID messageId,
+                             @Param("limit") int limit);
+
+    @Query(nativeQuery = true, value = """
+        SELECT m.*
+        FROM messages m
+        WHERE m.conversation_id = :conversationId
+        AND (m.sent_at, m.id) > (:sentAt, :messageId)
+        ORDER BY m.sent_at, m.id
+        LIMIT :limit
+    """)
+    List<Message> findAfter(@Param("conversationId") UUID conversationId,
+                            @Param("sentAt") LocalDateTime sentAt,
+                            @Param("messageId") UUID messageId,
+                            @Param("limit") int limit);
+
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender WHERE m.id IN :ids ORDER BY m.sentAt, m.id")
+    List<Message> findWithSenderByIdIn(@Param("ids") Collection<UUID> ids);
 }
\ No newline at end of file
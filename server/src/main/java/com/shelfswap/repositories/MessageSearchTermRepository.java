@@ -0,0 +1,59 @@
+package com.shelfswap.repositories;
+
+import com.shelfswap.entities.MessageSearchTerm;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface MessageSearchTermRepository extends JpaRepository<MessageSearchTerm, Long> {
+    // The user's postings of one term, counted up to the cap; enough to tell rare terms from common ones.
+    @Query(value = """
+        SELECT COUNT(*)
+        FROM (
+            SELECT 1
+            FROM message_search_terms t
+            WHERE t.user_id = :userId
+            AND t.term = :term
+            LIMIT :cap
+        ) postings
+    """, nativeQuery = true)
+    long countPostings(@Param("userId") UUID userId, @Param("term") String term, @Param("cap") int cap);
+
+    /*
+     * Messages containing every term, newest first. Walks the driving term's range of the
+     * (user_id, term, sent_at, message_id) index backwards and probes the same index once
+     * per term for each candidate, stopping as soon as the page is full. The driving term
+     * is among the probed terms, so a one-word query needs no special case.
+     */
+    @Query(value = """
+        SELECT d.message_id
+        FROM message_search_terms d
+        WHERE d.user_id = :userId
+        AND d.term = :driver
+        AND (d.sent_at, d.message_id) < (:beforeSentAt, :beforeId)
+        AND (
+            SELECT COUNT(*)
+            FROM message_search_terms o
+            WHERE o.user_id = d.user_id
+            AND o.term IN (:terms)
+            AND o.sent_at = d.sent_at
+            AND o.message_id = d.message_id
+        ) = :termCount
+        ORDER BY d.sent_at DESC, d.message_id DESC
+        LIMIT :limit
+    """, nativeQuery = true)
+    List<UUID> findMessageIdsBefore(
+            @Param("userId") UUID userId,
+            @Param("driver") String driver,
+            @Param("terms") Collection<String> terms,
+            @Param("termCount") int termCount,
+            @Param("beforeSentAt") LocalDateTime beforeSentAt,
+            @Param("beforeId") UUID beforeId,
+            @Param("limit") int limit
+    );
+}
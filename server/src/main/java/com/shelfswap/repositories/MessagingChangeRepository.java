@@ -0,0 +1,23 @@
+package com.shelfswap.repositories;
+
+import com.shelfswap.entities.MessagingChange;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public interface MessagingChangeRepository extends JpaRepository<MessagingChange, Long> {
+    List<MessagingChange> findByUserIdAndSeqGreaterThanOrderBySeq(UUID userId, long seq, Limit limit);
+
+    @Query("SELECT MIN(c.seq) FROM MessagingChange c WHERE c.userId = :userId")
+    Long findFirstSeq(@Param("userId") UUID userId);
+
+    @Modifying
+    @Query("DELETE FROM MessagingChange c WHERE c.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
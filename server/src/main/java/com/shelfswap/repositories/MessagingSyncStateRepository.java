@@ -0,0 +1,9 @@
+package com.shelfswap.repositories;
+
+import com.shelfswap.entities.MessagingSyncState;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.UUID;
+
+public interface MessagingSyncStateRepository extends JpaRepository<MessagingSyncState, UUID> {
+}
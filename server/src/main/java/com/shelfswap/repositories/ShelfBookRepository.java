@@ -1,21 +1,43 @@
 package com.shelfswap.repositories;
 
+import com.shelfswap.dtos.BookCount;
 import com.shelfswap.dtos.BookDTO;
+import com.shelfswap.dtos.BookOwnerRow;
+import com.shelfswap.dtos.ShelvedBook;
+import com.shelfswap.dtos.UserBookRef;
 import com.shelfswap.entities.Book;
 import com.shelfswap.entities.ShelfBook;
-import com.shelfswap.entities.User;
+import jakarta.persistence.QueryHint;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.lang.NonNullApi;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface ShelfBookRepository extends JpaRepository<ShelfBook, UUID> {
     boolean existsByUserIdAndBookId(UUID userId, String bookId);
 
+    long countByBookId(String bookId);
+
+    // Returns 0 when the book is already on the user's shelf or wishlist.
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        INSERT INTO shelf_books (id, user_id, book_id, created_at)
+        SELECT gen_random_uuid(), :userId, :bookId, now()
+        WHERE NOT EXISTS (
+            SELECT 1 FROM wishlist_books w WHERE w.user_id = :userId AND w.book_id = :bookId
+        )
+        ON CONFLICT (user_id, book_id) DO NOTHING
+    """)
+    int insertIfAbsent(@Param("userId") UUID userId, @Param("bookId") String bookId);
+
     @Query("""
         SELECT b
         FROM ShelfBook sb
@@ -26,12 +48,68 @@ public interface ShelfBookRepository extends JpaRepository<ShelfBook, UUID> {
 
     void deleteByUserIdAndBookId(UUID userId, String bookId);
 
+    // Newest copies first; (book_id, created_at, id) is the index order, so a page is one range scan.
+    @Query(nativeQuery = true, value = """
+        SELECT u.id AS "id", u.email AS "email", u.first_name AS "firstName", u.last_name AS "lastName",
+               false AS "hasWantedBooks", sb.created_at AS "shelvedAt", sb.id AS "shelfId"
+        FROM shelf_books sb
+        JOIN users u ON u.id = sb.user_id
+        WHERE sb.book_id = :bookId
+        AND sb.user_id <> :excludeUserId
+        AND (sb.created_at, sb.id) < (:afterShelvedAt, :afterShelfId)
+        ORDER BY sb.created_at DESC, sb.id DESC
+        LIMIT :limit
+    """)
+    List<BookOwnerRow> findOwnersAfter(@Param("bookId") String bookId,
+                                       @Param("excludeUserId") UUID excludeUserId,
+                                       @Param("afterShelvedAt") LocalDateTime afterShelvedAt,
+                                       @Param("afterShelfId") UUID afterShelfId,
+                                       @Param("limit") int limit);
+
+    // Same listing, but owners holding another book on the viewer's wishlist come first.
+    @Query(nativeQuery = true, value = """
+        SELECT o.*
+        FROM (
+            SELECT u.id AS "id", u.email AS "email", u.first_name AS "firstName", u.last_name AS "lastName",
+                   EXISTS (
+                       SELECT 1
+                       FROM shelf_books theirs
+                       JOIN wishlist_books w ON w.book_id = theirs.book_id
+                       WHERE theirs.user_id = sb.user_id
+                       AND w.user_id = :excludeUserId
+                       AND theirs.book_id <> :bookId
+                   ) AS "hasWantedBooks",
+                   sb.created_at AS "shelvedAt", sb.id AS "shelfId"
+            FROM shelf_books sb
+            JOIN users u ON u.id = sb.user_id
+            WHERE sb.book_id = :bookId
+            AND sb.user_id <> :excludeUserId
+        ) o
+        WHERE (o."hasWantedBooks", o."shelvedAt", o."shelfId") < (:afterHasWantedBooks, :afterShelvedAt, :afterShelfId)
+        ORDER BY o."hasWantedBooks" DESC, o."shelvedAt" DESC, o."shelfId" DESC
+        LIMIT :limit
+    """)
+    List<BookOwnerRow> findOwnersWantedFirstAfter(@Param("bookId") String bookId,
+                                                  @Param("excludeUserId") UUID excludeUserId,
+                                                  @Param("afterHasWantedBooks") boolean afterHasWantedBooks,
+                                                  @Param("afterShelvedAt") LocalDateTime afterShelvedAt,
+                                                  @Param("afterShelfId") UUID afterShelfId,
+                                                  @Param("limit") int limit);
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT new com.shelfswap.dtos.UserBookRef(sb.user.id, sb.book.id, sb.createdAt) FROM ShelfBook sb")
+    Stream<UserBookRef> streamAllRefs();
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
     @Query("""
-        SELECT DISTINCT sb.user
+        SELECT new com.shelfswap.dtos.ShelvedBook(b.id, b.title, b.author, b.coverUrl, COUNT(sb))
         FROM ShelfBook sb
-        WHERE sb.book.id = :bookId
-        AND sb.user.id != :excludeUserId
-        ORDER BY sb.user.createdAt DESC
-        """)
-    List<User> findUsersByBookIdExcluding(@Param("bookId") String bookId, @Param("excludeUserId") UUID excludeUserId);
+        JOIN sb.book b
+        GROUP BY b.id, b.title, b.author, b.coverUrl
+    """)
+    Stream<ShelvedBook> streamShelvedBooks();
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT new com.shelfswap.dtos.BookCount(sb.book.id, COUNT(sb)) FROM ShelfBook sb GROUP BY sb.book.id")
+    Stream<BookCount> streamBookCounts();
 }
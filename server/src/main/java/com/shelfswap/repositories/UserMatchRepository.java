@@ -0,0 +1,200 @@
+package com.shelfswap.repositories;
+
+import com.shelfswap.dtos.MatchCountRow;
+import com.shelfswap.entities.UserMatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface UserMatchRepository extends JpaRepository<UserMatch, UUID> {
+    /*
+     * Shelf additions by :userId add a pair entry with each of the books' wishers, counted per
+     * partner so a batch of books costs one statement, and make it the pair's newest matched
+     * entry. Only additions may insert: a pair with no row has nothing to take away.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        INSERT INTO user_matches (id, user_id, partner_id, they_own_count, i_own_count, last_matched_at, updated_at)
+        SELECT gen_random_uuid(), w.user_id, :userId, COUNT(*), 0, now(), now()
+        FROM wishlist_books w
+        WHERE w.book_id IN (:bookIds)
+        AND w.user_id <> :userId
+        GROUP BY w.user_id
+        ON CONFLICT (user_id, partner_id) DO UPDATE
+        SET they_own_count = user_matches.they_own_count + EXCLUDED.they_own_count,
+            last_matched_at = now(),
+            updated_at = now()
+    """)
+    void addShelfMatchesForWishers(@Param("userId") UUID userId, @Param("bookIds") Collection<String> bookIds);
+
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        INSERT INTO user_matches (id, user_id, partner_id, they_own_count, i_own_count, last_matched_at, updated_at)
+        SELECT gen_random_uuid(), :userId, w.user_id, 0, COUNT(*), now(), now()
+        FROM wishlist_books w
+        WHERE w.book_id IN (:bookIds)
+        AND w.user_id <> :userId
+        GROUP BY w.user_id
+        ON CONFLICT (user_id, partner_id) DO UPDATE
+        SET i_own_count = user_matches.i_own_count + EXCLUDED.i_own_count,
+            last_matched_at = now(),
+            updated_at = now()
+    """)
+    void addShelfMatchesForOwner(@Param("userId") UUID userId, @Param("bookIds") Collection<String> bookIds);
+
+    // Wishlist additions by :userId add a pair entry with each of the books' owners.
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        INSERT INTO user_matches (id, user_id, partner_id, they_own_count, i_own_count, last_matched_at, updated_at)
+        SELECT gen_random_uuid(), :userId, s.user_id, COUNT(*), 0, now(), now()
+        FROM shelf_books s
+        WHERE s.book_id IN (:bookIds)
+        AND s.user_id <> :userId
+        GROUP BY s.user_id
+        ON CONFLICT (user_id, partner_id) DO UPDATE
+        SET they_own_count = user_matches.they_own_count + EXCLUDED.they_own_count,
+            last_matched_at = now(),
+            updated_at = now()
+    """)
+    void addWishlistMatchesForWisher(@Param("userId") UUID userId, @Param("bookIds") Collection<String> bookIds);
+
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        INSERT INTO user_matches (id, user_id, partner_id, they_own_count, i_own_count, last_matched_at, updated_at)
+        SELECT gen_random_uuid(), s.user_id, :userId, 0, COUNT(*), now(), now()
+        FROM shelf_books s
+        WHERE s.book_id IN (:bookIds)
+        AND s.user_id <> :userId
+        GROUP BY s.user_id
+        ON CONFLICT (user_id, partner_id) DO UPDATE
+        SET i_own_count = user_matches.i_own_count + EXCLUDED.i_own_count,
+            last_matched_at = now(),
+            updated_at = now()
+    """)
+    void addWishlistMatchesForOwners(@Param("userId") UUID userId, @Param("bookIds") Collection<String> bookIds);
+
+    /*
+     * Removals only update existing rows. They leave last_matched_at as it was, so it may
+     * run ahead of the remaining entries until the pair is rebuilt.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        UPDATE user_matches m
+        SET they_own_count = m.they_own_count - 1, updated_at = now()
+        FROM wishlist_books w
+        WHERE w.book_id = :bookId
+        AND w.user_id <> :userId
+        AND m.user_id = w.user_id
+        AND m.partner_id = :userId
+    """)
+    void removeShelfMatchesForWishers(@Param("userId") UUID userId, @Param("bookId") String bookId);
+
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        UPDATE user_matches m
+        SET i_own_count = m.i_own_count - 1, updated_at = now()
+        FROM wishlist_books w
+        WHERE w.book_id = :bookId
+        AND w.user_id <> :userId
+        AND m.user_id = :userId
+        AND m.partner_id = w.user_id
+    """)
+    void removeShelfMatchesForOwner(@Param("userId") UUID userId, @Param("bookId") String bookId);
+
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        UPDATE user_matches m
+        SET they_own_count = m.they_own_count - 1, updated_at = now()
+        FROM shelf_books s
+        WHERE s.book_id = :bookId
+        AND s.user_id <> :userId
+        AND m.user_id = :userId
+        AND m.partner_id = s.user_id
+    """)
+    void removeWishlistMatchesForWisher(@Param("userId") UUID userId, @Param("bookId") String bookId);
+
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        UPDATE user_matches m
+        SET i_own_count = m.i_own_count - 1, updated_at = now()
+        FROM shelf_books s
+        WHERE s.book_id = :bookId
+        AND s.user_id <> :userId
+        AND m.user_id = s.user_id
+        AND m.partner_id = :userId
+    """)
+    void removeWishlistMatchesForOwners(@Param("userId") UUID userId, @Param("bookId") String bookId);
+
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        DELETE FROM user_matches
+        WHERE (user_id = :userId OR partner_id = :userId)
+        AND they_own_count = 0
+        AND i_own_count = 0
+    """)
+    void deleteEmptyMatches(@Param("userId") UUID userId);
+
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        DELETE FROM user_matches
+        WHERE user_id = :userId OR partner_id = :userId
+    """)
+    void deleteAllForUser(@Param("userId") UUID userId);
+
+    List<UserMatch> findByUserId(UUID userId);
+
+    // What rebuildForUser would write for :userId's side of each pair, counted from the list tables.
+    @Query(nativeQuery = true, value = """
+        WITH pairs AS (
+            SELECT s.user_id AS partner_id, 1 AS they_own, 0 AS i_own
+            FROM wishlist_books w
+            JOIN shelf_books s ON s.book_id = w.book_id
+            WHERE w.user_id = :userId
+            AND s.user_id <> :userId
+            UNION ALL
+            SELECT w.user_id AS partner_id, 0 AS they_own, 1 AS i_own
+            FROM shelf_books s
+            JOIN wishlist_books w ON w.book_id = s.book_id
+            WHERE s.user_id = :userId
+            AND w.user_id <> :userId
+        )
+        SELECT partner_id AS "partnerId", SUM(they_own) AS "theyOwnCount", SUM(i_own) AS "iOwnCount"
+        FROM pairs
+        GROUP BY partner_id
+    """)
+    List<MatchCountRow> recountForUser(@Param("userId") UUID userId);
+
+    // Recomputes both directions of every pair involving :userId from the shelf and wishlist tables.
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        WITH pairs AS (
+            SELECT s.user_id AS partner_id, 1 AS they_own, 0 AS i_own,
+                GREATEST(w.created_at, s.created_at) AS matched_at
+            FROM wishlist_books w
+            JOIN shelf_books s ON s.book_id = w.book_id
+            WHERE w.user_id = :userId
+            AND s.user_id <> :userId
+            UNION ALL
+            SELECT w.user_id AS partner_id, 0 AS they_own, 1 AS i_own,
+                GREATEST(w.created_at, s.created_at) AS matched_at
+            FROM shelf_books s
+            JOIN wishlist_books w ON w.book_id = s.book_id
+            WHERE s.user_id = :userId
+            AND w.user_id <> :userId
+        ), totals AS (
+            SELECT partner_id, SUM(they_own) AS they_own, SUM(i_own) AS i_own, MAX(matched_at) AS matched_at
+            FROM pairs
+            GROUP BY partner_id
+        )
+        INSERT INTO user_matches (id, user_id, partner_id, they_own_count, i_own_count, last_matched_at, updated_at)
+        SELECT gen_random_uuid(), :userId, partner_id, they_own, i_own, matched_at, now() FROM totals
+        UNION ALL
+        SELECT gen_random_uuid(), partner_id, :userId, i_own, they_own, matched_at, now() FROM totals
+    """)
+    void rebuildForUser(@Param("userId") UUID userId);
+}
@@ -2,12 +2,14 @@ package com.shelfswap.repositories;
 
 import com.shelfswap.dtos.UserDTO;
 import com.shelfswap.entities.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -20,6 +22,21 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     @Query("SELECT u.id FROM User u WHERE u.email = :email")
     UUID findIdByEmail(@Param("email") String email);
 
+    @Query("""
+        SELECT new com.shelfswap.dtos.UserDTO (
+            u.id,
+            u.email,
+            u.firstName,
+            u.lastName
+        )
+        FROM User u
+        WHERE u.id IN :ids
+    """)
+    List<UserDTO> findDtosByIdIn(@Param("ids") Collection<UUID> ids);
+
+    @Query("SELECT u.id FROM User u WHERE u.id > :after ORDER BY u.id")
+    List<UUID> findIdsAfter(@Param("after") UUID after, Limit limit);
+
     @Query("""
         SELECT new com.shelfswap.dtos.UserDTO (
             s.user.id,
@@ -41,4 +58,19 @@ public interface UserRepository extends JpaRepository<User, UUID> {
         ORDER BY COUNT(s.book.id) DESC
     """)
     List<UserDTO> findMutualUsers(@Param("userId") UUID userId, Pageable page);
+
+    @Query(nativeQuery = true, value = """
+        SELECT EXISTS (
+            SELECT 1 FROM wishlist_books w
+            JOIN shelf_books s ON s.book_id = w.book_id
+            WHERE w.user_id = :user1Id
+            AND s.user_id = :user2Id
+        ) AND EXISTS (
+            SELECT 1 FROM shelf_books s
+            JOIN wishlist_books w ON w.book_id = s.book_id
+            WHERE s.user_id = :user1Id
+            AND w.user_id = :user2Id
+        )
+    """)
+    boolean existsMutualBooks(@Param("user1Id") UUID user1Id, @Param("user2Id") UUID user2Id);
 }
@@ -1,17 +1,35 @@
 package com.shelfswap.repositories;
 
+import com.shelfswap.dtos.BookCount;
+import com.shelfswap.dtos.UserBookRef;
 import com.shelfswap.entities.Book;
 import com.shelfswap.entities.WishlistBook;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface WishlistRepository extends JpaRepository<WishlistBook, UUID> {
     boolean existsByUserIdAndBookId(UUID userId, String bookId);
 
+    // Returns 0 when the book is already on the user's wishlist or shelf.
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        INSERT INTO wishlist_books (id, user_id, book_id, created_at)
+        SELECT gen_random_uuid(), :userId, :bookId, now()
+        WHERE NOT EXISTS (
+            SELECT 1 FROM shelf_books s WHERE s.user_id = :userId AND s.book_id = :bookId
+        )
+        ON CONFLICT (user_id, book_id) DO NOTHING
+    """)
+    int insertIfAbsent(@Param("userId") UUID userId, @Param("bookId") String bookId);
+
     @Query("""
         SELECT b
         FROM WishlistBook wb
@@ -21,4 +39,12 @@ public interface WishlistRepository extends JpaRepository<WishlistBook, UUID> {
     List<Book> findWishlistBookByUserId(@Param("userId") UUID userId);
 
     void deleteByUserIdAndBookId(UUID userId, String bookId);
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT new com.shelfswap.dtos.UserBookRef(wb.user.id, wb.book.id, wb.createdAt) FROM WishlistBook wb")
+    Stream<UserBookRef> streamAllRefs();
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT new com.shelfswap.dtos.BookCount(wb.book.id, COUNT(wb)) FROM WishlistBook wb GROUP BY wb.book.id")
+    Stream<BookCount> streamBookCounts();
 }
@@ -0,0 +1,20 @@
+package com.shelfswap.scoring;
+
+import org.springframework.stereotype.Component;
+
+// How recently the partner messaged anyone, read off the conversations' participant indexes.
+@Component
+public class ActivitySignal implements FeedSignal {
+    @Override
+    public String name() {
+        return "activity";
+    }
+
+    @Override
+    public String expression() {
+        return DecaySignals.decay("""
+            GREATEST(
+                (SELECT MAX(c.last_message_at) FROM conversations c WHERE c.initiator_id = m.partner_id),
+                (SELECT MAX(c.last_message_at) FROM conversations c WHERE c.recipient_id = m.partner_id))""");
+    }
+}
@@ -0,0 +1,18 @@
+package com.shelfswap.scoring;
+
+import java.util.concurrent.TimeUnit;
+
+final class DecaySignals {
+    private static final long HALF_LIFE_MILLIS = TimeUnit.DAYS.toMillis(14);
+
+    private DecaySignals() {
+    }
+
+    // 1.0 for "just now", halving every full two weeks, 0 when the timestamp is null.
+    static String decay(String timestamp) {
+        return """
+            COALESCE(power(0.5::float8, floor(
+                GREATEST(0, extract(epoch FROM p.scored_at - %s) * 1000) / %d)::float8), 0)"""
+                .formatted(timestamp, HALF_LIFE_MILLIS);
+    }
+}
@@ -0,0 +1,114 @@
+package com.shelfswap.scoring;
+
+import com.shelfswap.dtos.FeedCursor;
+import com.shelfswap.entities.FeedSignalWeight;
+import com.shelfswap.repositories.FeedSignalWeightRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Ranks mutual swap partners by a weighted sum of {@link FeedSignal}s. The signals are
+ * SQL expressions, so a page is one keyset query over all of the user's user_matches
+ * rows and every partner can be reached, whatever their rank. Weights come from the
+ * feed_signal_weights table (falling back to shelfswap.feed.weights.*) and are
+ * reloaded periodically, so they can be tuned without a redeploy. A paging session
+ * keeps the time and weights its first page was scored with; see {@link FeedCursor}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FeedScoringEngine {
+    // Ties are broken on partner_id, which Postgres compares as unsigned bytes.
+    private static final String RANK_AFTER = """
+        SELECT partner_id, score
+        FROM (
+            SELECT m.partner_id, %s AS score
+            FROM user_matches m, (SELECT CAST(:scoredAt AS timestamp) AS scored_at) p
+            WHERE m.user_id = :userId
+            AND m.overlap_score > 0
+        ) ranked
+        WHERE score < :afterScore
+        OR (score = :afterScore AND partner_id > :afterUserId)
+        ORDER BY score DESC, partner_id
+        LIMIT :limit
+    """;
+
+    private final List<FeedSignal> signals;
+    private final FeedSignalWeightRepository feedSignalWeightRepository;
+    private final EntityManager entityManager;
+    private final Environment environment;
+
+    private volatile Map<String, Double> weights = Map.of();
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(
+            initialDelayString = "${shelfswap.feed.weights-refresh-ms}",
+            fixedDelayString = "${shelfswap.feed.weights-refresh-ms}"
+    )
+    public void refreshWeights() {
+        Map<String, Double> stored = feedSignalWeightRepository.findAll()
+                .stream()
+                .collect(Collectors.toMap(FeedSignalWeight::getSignal, FeedSignalWeight::getWeight));
+        Map<String, Double> fresh = new HashMap<>();
+        for (FeedSignal signal : signals) {
+            Double weight = stored.get(signal.name());
+            if (weight == null) {
+                weight = environment.getProperty("shelfswap.feed.weights." + signal.name(), Double.class, 0.0);
+            }
+            fresh.put(signal.name(), weight);
+        }
+        if (!fresh.equals(weights)) {
+            log.info("Feed signal weights set to {}", fresh);
+        }
+        weights = Map.copyOf(fresh);
+    }
+
+    public Map<String, Double> currentWeights() {
+        return weights;
+    }
+
+    // Scores with the cursor's time and weights, which must already be set.
+    public List<ScoredCandidate> rankAfter(UUID userId, FeedCursor after, int limit) {
+        List<String> terms = new ArrayList<>();
+        List<Double> termWeights = new ArrayList<>();
+        for (FeedSignal signal : signals) {
+            double weight = after.getWeights().getOrDefault(signal.name(), 0.0);
+            if (weight != 0) {
+                terms.add(":weight" + terms.size() + " * (" + signal.expression() + ")");
+                termWeights.add(weight);
+            }
+        }
+        Query query = entityManager.createNativeQuery(RANK_AFTER.formatted(terms.isEmpty() ? "0" : String.join(" + ", terms)))
+                .setParameter("scoredAt", LocalDateTime.ofInstant(Instant.ofEpochMilli(after.getScoredAt()), ZoneId.systemDefault()))
+                .setParameter("userId", userId)
+                .setParameter("afterScore", after.getScore())
+                .setParameter("afterUserId", after.getUserId())
+                .setParameter("limit", limit);
+        for (int i = 0; i < termWeights.size(); i++) {
+            query.setParameter("weight" + i, termWeights.get(i));
+        }
+
+        List<?> rows = query.getResultList();
+        return rows.stream()
+                .map(row -> (Object[]) row)
+                .map(row -> new ScoredCandidate((UUID) row[0], ((Number) row[1]).doubleValue()))
+                .toList();
+    }
+}
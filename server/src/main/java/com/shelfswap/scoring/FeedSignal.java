@@ -0,0 +1,12 @@
+package com.shelfswap.scoring;
+
+/**
+ * One ranking input for the feed. Every bean implementing this is picked up by
+ * {@link FeedScoringEngine}; its weight is looked up by {@link #name()}.
+ */
+public interface FeedSignal {
+    String name();
+
+    // SQL scoring the user_matches row m as of p.scored_at, the time the feed is scored at.
+    String expression();
+}
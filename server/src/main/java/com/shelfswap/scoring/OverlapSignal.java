@@ -0,0 +1,18 @@
+package com.shelfswap.scoring;
+
+import org.springframework.stereotype.Component;
+
+// Harmonic mean of both directions, so a balanced swap outranks a one-sided one.
+@Component
+public class OverlapSignal implements FeedSignal {
+    @Override
+    public String name() {
+        return "overlap";
+    }
+
+    // Kept on the row by schema.sql.
+    @Override
+    public String expression() {
+        return "m.overlap_score";
+    }
+}
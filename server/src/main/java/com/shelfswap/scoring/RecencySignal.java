@@ -0,0 +1,17 @@
+package com.shelfswap.scoring;
+
+import org.springframework.stereotype.Component;
+
+// How recently the entries the pair matches on were added, not the partner's list activity in general.
+@Component
+public class RecencySignal implements FeedSignal {
+    @Override
+    public String name() {
+        return "recency";
+    }
+
+    @Override
+    public String expression() {
+        return DecaySignals.decay("m.last_matched_at");
+    }
+}
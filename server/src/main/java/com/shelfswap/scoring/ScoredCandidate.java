@@ -0,0 +1,13 @@
+package com.shelfswap.scoring;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+@Getter
+@AllArgsConstructor
+public class ScoredCandidate {
+    private final UUID userId;
+    private final double score;
+}
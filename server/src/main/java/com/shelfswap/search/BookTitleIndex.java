@@ -0,0 +1,335 @@
+package com.shelfswap.search;
+
+import com.shelfswap.dtos.ShelvedBook;
+import com.shelfswap.entities.Book;
+import com.shelfswap.events.BookCreatedEvent;
+import com.shelfswap.events.ShelfBatchEvent;
+import com.shelfswap.events.ShelfChangeEvent;
+import com.shelfswap.index.SortedIntSet;
+import com.shelfswap.repositories.BookRepository;
+import com.shelfswap.repositories.ShelfBookRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Trigram inverted index over the title and author of every shelved book. A book
+ * matches when it contains enough of the query's trigrams, so a typo costs a few
+ * trigrams rather than the whole hit, and results are ranked by that share. The same
+ * books are also held in a {@link PrefixTrie} keyed on every word of the title and
+ * author, which answers search-as-you-type with the most shelved books first.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookTitleIndex {
+    private final ShelfBookRepository shelfBookRepository;
+    private final BookRepository bookRepository;
+
+    private static final int MAX_KEY_LENGTH = 64;
+    private static final int GRAM_LENGTH = 3;
+
+    @Value("${shelfswap.search.min-similarity}")
+    private double minSimilarity;
+
+    @Value("${shelfswap.search.autocomplete-size}")
+    private int autocompleteSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Queue<String> pendingBookIds = new ConcurrentLinkedQueue<>();
+    private volatile boolean ready = false;
+    private volatile boolean rebuilding = true;
+
+    private Docs docs;
+
+    @PostConstruct
+    void init() {
+        docs = new Docs(autocompleteSize);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        rebuilding = true;
+        long start = System.currentTimeMillis();
+        Docs fresh = new Docs(autocompleteSize);
+        try (Stream<ShelvedBook> shelved = shelfBookRepository.streamShelvedBooks()) {
+            shelved.forEach(fresh::load);
+        }
+        fresh.prefixes.computeTops();
+
+        List<String> missed = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            docs = fresh;
+            rebuilding = false;
+            String bookId;
+            while ((bookId = pendingBookIds.poll()) != null) {
+                missed.add(bookId);
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        missed.forEach(this::refresh);
+        log.info("Book title index built with {} books and {} trigrams in {} ms",
+                fresh.books.size(), fresh.postings.size(), System.currentTimeMillis() - start);
+    }
+
+    @TransactionalEventListener
+    public void onBookCreated(BookCreatedEvent event) {
+        lock.writeLock().lock();
+        try {
+            docs.intern(event.getBook());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener
+    public void onShelfChange(ShelfChangeEvent event) {
+        if (event.isShelf()) {
+            refresh(event.getBookId());
+        }
+    }
+
+    @TransactionalEventListener
+    public void onShelfBatch(ShelfBatchEvent event) {
+        event.getShelfBookIds().forEach(this::refresh);
+    }
+
+    /*
+     * A query shorter than a trigram would otherwise match every word starting with it,
+     * or nothing at all, so it is looked up as a whole word: "It" finds "It" and not
+     * "Italian Folktales". Failing that, it is taken as a word prefix, as autocomplete does.
+     */
+    public List<Book> search(String query, int page, int size) {
+        String normalized = normalize(query);
+        boolean wholeWord = !normalized.isEmpty() && normalized.length() < GRAM_LENGTH;
+        long[] grams = trigrams(query, wholeWord);
+        if (grams.length == 0) {
+            return List.of();
+        }
+        int minShared = wholeWord ? grams.length : Math.max(1, (int) Math.ceil(grams.length * minSimilarity));
+
+        lock.readLock().lock();
+        try {
+            int[] shared = new int[docs.books.size()];
+            List<Integer> candidates = new ArrayList<>();
+            for (long gram : grams) {
+                SortedIntSet posting = docs.postings.get(gram);
+                if (posting != null) {
+                    posting.forEach(doc -> {
+                        if (++shared[doc] == minShared) {
+                            candidates.add(doc);
+                        }
+                    });
+                }
+            }
+
+            int from = page * size;
+            if (wholeWord && candidates.isEmpty()) {
+                return Arrays.stream(docs.prefixes.top(normalized))
+                        .skip(from)
+                        .limit(size)
+                        .mapToObj(docs.books::get)
+                        .toList();
+            }
+            if (from >= candidates.size()) {
+                return List.of();
+            }
+            candidates.sort(Comparator
+                    .comparingInt((Integer doc) -> shared[doc]).reversed()
+                    .thenComparing(doc -> docs.shelfCounts[doc], Comparator.reverseOrder())
+                    .thenComparing(doc -> docs.books.get(doc).getTitle()));
+            return candidates.subList(from, Math.min(from + size, candidates.size()))
+                    .stream()
+                    .map(docs.books::get)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // At most shelfswap.search.autocomplete-size books, most shelved first.
+    public List<Book> autocomplete(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        key = key.substring(0, Math.min(key.length(), MAX_KEY_LENGTH));
+
+        lock.readLock().lock();
+        try {
+            return Arrays.stream(docs.prefixes.top(key))
+                    .limit(limit)
+                    .mapToObj(docs.books::get)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+     * Shelf copies are recounted instead of incremented so that replaying a change the
+     * rebuild already saw, or applying one twice, leaves the index correct.
+     */
+    private void refresh(String bookId) {
+        lock.writeLock().lock();
+        try {
+            if (rebuilding) {
+                pendingBookIds.add(bookId);
+                return;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long copies = shelfBookRepository.countByBookId(bookId);
+        Book book = null;
+        if (copies > 0 && !isKnown(bookId)) {
+            book = bookRepository.findById(bookId).orElse(null);
+        }
+        lock.writeLock().lock();
+        try {
+            docs.setShelfCount(bookId, book, copies);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean isKnown(String bookId) {
+        lock.readLock().lock();
+        try {
+            return docs.ids.containsKey(bookId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static String normalize(String text) {
+        String stripped = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return stripped.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    // Queries are not padded at the end because the last word is usually still being typed.
+    static long[] trigrams(String text, boolean padEnd) {
+        String normalized = normalize(text);
+        if (normalized.isEmpty()) {
+            return new long[0];
+        }
+        String padded = " " + normalized + (padEnd ? " " : "");
+        Set<Long> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= padded.length(); i++) {
+            grams.add(((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2));
+        }
+        return grams.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    // Every word start of the title and of the author, so "potter" finds "Harry Potter".
+    static Set<String> prefixKeys(Book book) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (String text : List.of(normalize(book.getTitle()), normalize(book.getAuthor()))) {
+            for (int start = 0; start < text.length(); start = text.indexOf(' ', start) + 1) {
+                keys.add(text.substring(start, Math.min(text.length(), start + MAX_KEY_LENGTH)));
+                if (text.indexOf(' ', start) < 0) {
+                    break;
+                }
+            }
+        }
+        return keys;
+    }
+
+    private static class Docs {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<Book> books = new ArrayList<>();
+        private long[] shelfCounts = new long[16];
+        private final Map<Long, SortedIntSet> postings = new HashMap<>();
+        private final PrefixTrie prefixes;
+
+        Docs(int autocompleteSize) {
+            this.prefixes = new PrefixTrie(autocompleteSize, doc -> shelfCounts[doc]);
+        }
+
+        // Bulk load of a shelved book; the trie's top lists are computed once at the end.
+        void load(ShelvedBook shelved) {
+            int doc = intern(shelved.toBook());
+            shelfCounts[doc] = shelved.getShelfCount();
+            for (long gram : gramsOf(doc)) {
+                postings.computeIfAbsent(gram, g -> new SortedIntSet()).add(doc);
+            }
+            prefixKeys(books.get(doc)).forEach(key -> prefixes.append(key, doc));
+        }
+
+        int intern(Book book) {
+            return ids.computeIfAbsent(book.getId(), id -> {
+                books.add(book);
+                if (books.size() > shelfCounts.length) {
+                    shelfCounts = Arrays.copyOf(shelfCounts, shelfCounts.length * 2);
+                }
+                return books.size() - 1;
+            });
+        }
+
+        // Only books with at least one shelf copy have postings.
+        void setShelfCount(String bookId, Book book, long copies) {
+            Integer doc = ids.get(bookId);
+            if (doc == null) {
+                if (book == null || copies == 0) {
+                    return;
+                }
+                doc = intern(book);
+            }
+            long before = shelfCounts[doc];
+            shelfCounts[doc] = copies;
+            int indexed = doc;
+            if (before == 0 && copies > 0) {
+                for (long gram : gramsOf(doc)) {
+                    postings.computeIfAbsent(gram, g -> new SortedIntSet()).add(doc);
+                }
+                prefixKeys(books.get(doc)).forEach(key -> prefixes.add(key, indexed));
+            } else if (before > 0 && copies == 0) {
+                for (long gram : gramsOf(doc)) {
+                    SortedIntSet posting = postings.get(gram);
+                    if (posting != null && posting.remove(doc) && posting.isEmpty()) {
+                        postings.remove(gram);
+                    }
+                }
+                prefixKeys(books.get(doc)).forEach(key -> prefixes.remove(key, indexed));
+            } else if (before != copies) {
+                prefixKeys(books.get(doc)).forEach(prefixes::reorder);
+            }
+        }
+
+        private long[] gramsOf(int doc) {
+            Book book = books.get(doc);
+            return trigrams(book.getTitle() + " " + book.getAuthor(), true);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.shelfswap.search;
+
+import com.shelfswap.dtos.Highlight;
+import com.shelfswap.dtos.MessageCursor;
+import com.shelfswap.dtos.MessageDTO;
+import com.shelfswap.entities.CompletedBackfill;
+import com.shelfswap.events.MessageSentEvent;
+import com.shelfswap.repositories.CompletedBackfillRepository;
+import com.shelfswap.repositories.MessageSearchTermRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Per-user inverted index over message content, kept in message_search_terms as one
+ * posting per word, message and participant. Postings are written for both participants
+ * in the same transaction as the message, so a user's postings only ever cover their own
+ * conversations, and a search walks the index range of its rarest word, checking the
+ * other words per message, rather than a LIKE over every message. Messages sent before
+ * the index existed are indexed once on startup.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MessageSearchIndex {
+    private static final String INSERT_POSTING = """
+        INSERT INTO message_search_terms (user_id, term, sent_at, message_id, conversation_id)
+        VALUES (?, ?, ?, ?, ?)
+        ON CONFLICT DO NOTHING
+    """;
+    private static final String BACKFILL_BATCH = """
+        SELECT m.id, m.conversation_id, m.content, m.sent_at, c.initiator_id, c.recipient_id
+        FROM messages m
+        JOIN conversations c ON c.id = m.conversation_id
+        WHERE (m.sent_at, m.id) > (?, ?)
+        ORDER BY m.sent_at, m.id
+        LIMIT ?
+    """;
+    private static final String BACKFILL = "message-search-terms";
+    private static final int BACKFILL_BATCH_SIZE = 1_000;
+
+    // Marks are kept in the word so that a decomposed accent does not split it.
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}\\p{M}]+");
+    // Single letters would have a posting in nearly every message.
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_TERM_LENGTH = 64;
+    public static final int MAX_QUERY_TERMS = 8;
+    // Past this many postings a term is common enough that which one drives makes little difference.
+    private static final int DRIVER_POSTINGS_CAP = 10_000;
+    private static final int SNIPPET_LENGTH = 160;
+    private static final String ELLIPSIS = "…";
+
+    private final MessageSearchTermRepository messageSearchTermRepository;
+    private final CompletedBackfillRepository completedBackfillRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @EventListener
+    public void onMessageSent(MessageSentEvent event) {
+        MessageDTO message = event.getMessage();
+        List<Object[]> postings = postings(message.getId(), message.getConversationId(), message.getContent(),
+                message.getSentAt(), message.getSender().getId(), event.getRecipientId());
+        if (!postings.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_POSTING, postings);
+        }
+    }
+
+    /*
+     * Postings are inserted with ON CONFLICT DO NOTHING, so messages sent while this runs,
+     * or a backfill interrupted and started over, are never indexed twice.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (completedBackfillRepository.existsById(BACKFILL)) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        LocalDateTime afterSentAt = MessageCursor.EARLIEST.getSentAt();
+        UUID afterId = MessageCursor.EARLIEST.getMessageId();
+        long indexed = 0;
+        while (true) {
+            List<Object[]> postings = new ArrayList<>();
+            List<BackfillRow> batch = jdbcTemplate.query(BACKFILL_BATCH, (rs, rowNum) -> new BackfillRow(
+                    rs.getObject("id", UUID.class),
+                    rs.getObject("conversation_id", UUID.class),
+                    rs.getString("content"),
+                    rs.getTimestamp("sent_at").toLocalDateTime(),
+                    rs.getObject("initiator_id", UUID.class),
+                    rs.getObject("recipient_id", UUID.class)
+            ), Timestamp.valueOf(afterSentAt), afterId, BACKFILL_BATCH_SIZE);
+            batch.forEach(row -> postings.addAll(postings(row.messageId(), row.conversationId(), row.content(),
+                    row.sentAt(), row.initiatorId(), row.recipientId())));
+            if (!postings.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_POSTING, postings);
+            }
+            indexed += batch.size();
+            if (batch.size() < BACKFILL_BATCH_SIZE) {
+                break;
+            }
+            afterSentAt = batch.getLast().sentAt();
+            afterId = batch.getLast().messageId();
+        }
+        completedBackfillRepository.save(CompletedBackfill.builder()
+                .name(BACKFILL)
+                .rowCount(indexed)
+                .completedAt(LocalDateTime.now())
+                .build());
+        log.info("Message search index backfilled with {} messages in {} ms",
+                indexed, System.currentTimeMillis() - start);
+    }
+
+    // IDs of the user's messages containing every term, newest first, older than the cursor.
+    public List<UUID> search(UUID userId, Collection<String> terms, MessageCursor before, int limit) {
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        String driver = null;
+        long fewest = Long.MAX_VALUE;
+        for (String term : terms) {
+            long postings = messageSearchTermRepository.countPostings(userId, term, DRIVER_POSTINGS_CAP);
+            if (postings == 0) {
+                return List.of();
+            }
+            if (postings < fewest) {
+                driver = term;
+                fewest = postings;
+            }
+        }
+        return messageSearchTermRepository.findMessageIdsBefore(userId, driver, terms, terms.size(),
+                before.getSentAt(), before.getMessageId(), limit);
+    }
+
+    // The distinct searchable words of a query, at most MAX_QUERY_TERMS of them.
+    public static Set<String> queryTerms(String query) {
+        Set<String> terms = terms(query);
+        return terms.size() <= MAX_QUERY_TERMS
+                ? terms
+                : new LinkedHashSet<>(terms.stream().limit(MAX_QUERY_TERMS).toList());
+    }
+
+    /**
+     * Cuts a window of the content around its first match, on word boundaries where it
+     * can, and returns it with the matched words as ranges of the snippet.
+     */
+    public static Snippet snippet(String content, Set<String> terms) {
+        List<Highlight> matches = new ArrayList<>();
+        Matcher words = WORD.matcher(content);
+        while (words.find()) {
+            if (terms.contains(term(words.group()))) {
+                matches.add(new Highlight(words.start(), words.end()));
+            }
+        }
+        if (content.length() <= SNIPPET_LENGTH) {
+            return new Snippet(content, matches);
+        }
+
+        int first = matches.isEmpty() ? 0 : matches.getFirst().getStart();
+        int from = Math.max(0, first - SNIPPET_LENGTH / 4);
+        int to = Math.min(content.length(), from + SNIPPET_LENGTH);
+        from = Math.max(0, to - SNIPPET_LENGTH);
+        // Only cut between the window edge and the first match, so the match stays in.
+        if (from > 0) {
+            int space = indexOfWhitespace(content, from, first);
+            from = space >= 0 ? space + 1 : from;
+        }
+        if (to < content.length()) {
+            int space = lastIndexOfWhitespace(content, to, first);
+            to = space >= 0 ? space : to;
+        }
+        if (Character.isLowSurrogate(content.charAt(from))) {
+            from++;
+        }
+        if (to < content.length() && Character.isLowSurrogate(content.charAt(to))) {
+            to--;
+        }
+
+        String prefix = from > 0 ? ELLIPSIS : "";
+        int begin = from;
+        int end = to;
+        int shift = prefix.length() - from;
+        List<Highlight> highlights = matches.stream()
+                .filter(match -> match.getStart() >= begin && match.getEnd() <= end)
+                .map(match -> new Highlight(match.getStart() + shift, match.getEnd() + shift))
+                .toList();
+        return new Snippet(prefix + content.substring(from, to) + (to < content.length() ? ELLIPSIS : ""), highlights);
+    }
+
+    private static List<Object[]> postings(UUID messageId, UUID conversationId, String content,
+                                           LocalDateTime sentAt, UUID... userIds) {
+        Set<String> terms = terms(content);
+        List<Object[]> postings = new ArrayList<>(terms.size() * userIds.length);
+        Timestamp at = Timestamp.valueOf(sentAt);
+        for (UUID userId : userIds) {
+            for (String term : terms) {
+                postings.add(new Object[]{userId, term, at, messageId, conversationId});
+            }
+        }
+        return postings;
+    }
+
+    private static Set<String> terms(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        Matcher words = WORD.matcher(text);
+        while (words.find()) {
+            String term = term(words.group());
+            if (term.length() >= MIN_TERM_LENGTH) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    private static String term(String word) {
+        String term = BookTitleIndex.normalize(word);
+        return term.length() <= MAX_TERM_LENGTH ? term : term.substring(0, MAX_TERM_LENGTH);
+    }
+
+    // The first whitespace in [from, limit), or -1.
+    private static int indexOfWhitespace(String text, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // The last whitespace in (limit, to], or -1.
+    private static int lastIndexOfWhitespace(String text, int to, int limit) {
+        for (int i = to; i > limit; i--) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public record Snippet(String text, List<Highlight> highlights) {
+    }
+
+    private record BackfillRow(UUID messageId, UUID conversationId, String content, LocalDateTime sentAt,
+                               UUID initiatorId, UUID recipientId) {
+    }
+}
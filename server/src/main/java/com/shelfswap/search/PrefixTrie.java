@@ -0,0 +1,187 @@
+package com.shelfswap.search;
+
+import com.shelfswap.index.SortedIntSet;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Radix trie from string keys to ints. Every node keeps the {@code topK} most popular
+ * ints below it, so a prefix lookup is a walk down the edges and nothing more. A node's
+ * top list is always drawn from its own keys and its children's top lists, so a change
+ * is repaired by recomputing just the nodes on the changed key's path.
+ */
+class PrefixTrie {
+    private static final int[] NONE = new int[0];
+
+    private final int topK;
+    private final Comparator<Integer> byPopularity;
+    private final Node root = new Node("");
+
+    PrefixTrie(int topK, IntToLongFunction popularity) {
+        this.topK = topK;
+        this.byPopularity = Comparator
+                .comparingLong((Integer value) -> popularity.applyAsLong(value)).reversed()
+                .thenComparingInt(value -> value);
+    }
+
+    void add(String key, int value) {
+        List<Node> path = insert(key);
+        path.getLast().values.add(value);
+        refreshTops(path);
+    }
+
+    /**
+     * Adds without maintaining the top lists, for bulk loading. {@link #computeTops()}
+     * must be called before the trie is read again.
+     */
+    void append(String key, int value) {
+        insert(key).getLast().values.add(value);
+    }
+
+    void remove(String key, int value) {
+        List<Node> path = find(key);
+        if (path != null && path.getLast().values.remove(value)) {
+            refreshTops(path);
+        }
+    }
+
+    // Called after a value's popularity changed.
+    void reorder(String key) {
+        List<Node> path = find(key);
+        if (path != null) {
+            refreshTops(path);
+        }
+    }
+
+    void computeTops() {
+        computeTops(root);
+    }
+
+    int[] top(String prefix) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            Node child = node.children.get(prefix.charAt(i));
+            if (child == null) {
+                return NONE;
+            }
+            int common = commonPrefix(child.label, prefix, i);
+            if (i + common == prefix.length()) {
+                return child.top;
+            }
+            if (common < child.label.length()) {
+                return NONE;
+            }
+            i += common;
+            node = child;
+        }
+        return node.top;
+    }
+
+    private List<Node> insert(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            char first = key.charAt(i);
+            Node child = node.children.get(first);
+            if (child == null) {
+                child = new Node(key.substring(i));
+                node.children.put(first, child);
+                path.add(child);
+                return path;
+            }
+            int common = commonPrefix(child.label, key, i);
+            if (common < child.label.length()) {
+                Node middle = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                middle.children.put(child.label.charAt(0), child);
+                middle.top = child.top;
+                node.children.put(first, middle);
+                child = middle;
+            }
+            path.add(child);
+            node = child;
+            i += common;
+        }
+        return path;
+    }
+
+    private List<Node> find(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.children.get(key.charAt(i));
+            if (child == null) {
+                return null;
+            }
+            int common = commonPrefix(child.label, key, i);
+            if (common < child.label.length()) {
+                return null;
+            }
+            path.add(child);
+            node = child;
+            i += common;
+        }
+        return path;
+    }
+
+    private void refreshTops(List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            path.get(i).top = mergeTop(path.get(i));
+        }
+    }
+
+    private void computeTops(Node node) {
+        node.children.values().forEach(this::computeTops);
+        node.top = mergeTop(node);
+    }
+
+    private int[] mergeTop(Node node) {
+        Set<Integer> pool = new LinkedHashSet<>();
+        node.values.forEach(pool::add);
+        for (Node child : node.children.values()) {
+            for (int value : child.top) {
+                pool.add(value);
+            }
+        }
+        if (pool.isEmpty()) {
+            return NONE;
+        }
+        return pool.stream()
+                .sorted(byPopularity)
+                .limit(topK)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static class Node {
+        private String label;
+        private final Map<Character, Node> children = new HashMap<>(4);
+        private final SortedIntSet values = new SortedIntSet();
+        private int[] top = NONE;
+
+        Node(String label) {
+            this.label = label;
+        }
+    }
+}
@@ -1,36 +1,64 @@
 package com.shelfswap.services;
 
+import com.shelfswap.cache.BookCatalogCache;
 import com.shelfswap.dtos.BookAddRequest;
 import com.shelfswap.dtos.BookDTO;
-import com.shelfswap.dtos.UserDTO;
-import com.shelfswap.mappers.UserMapper;
+import com.shelfswap.dtos.BookOwnerPage;
+import com.shelfswap.dtos.BookOwnerRow;
+import com.shelfswap.dtos.BookPopularity;
+import com.shelfswap.dtos.BookSearchResult;
+import com.shelfswap.dtos.OwnerCursor;
+import com.shelfswap.dtos.PopularBook;
+import com.shelfswap.mappers.BookMapper;
 import com.shelfswap.entities.Book;
-import com.shelfswap.entities.ShelfBook;
-import com.shelfswap.entities.User;
-import com.shelfswap.entities.WishlistBook;
-import com.shelfswap.exceptions.DuplicateExistsException;
+import com.shelfswap.events.BookCreatedEvent;
+import com.shelfswap.events.ShelfChangeEvent;
 import com.shelfswap.exceptions.NotFoundException;
+import com.shelfswap.exceptions.DuplicateExistsException;
 import com.shelfswap.exceptions.MutuallyExclusiveException;
+import com.shelfswap.popularity.BookPopularityCounters;
+import com.shelfswap.popularity.PopularityRanking;
 import com.shelfswap.repositories.BookRepository;
 import com.shelfswap.repositories.ShelfBookRepository;
 import com.shelfswap.repositories.WishlistRepository;
+import com.shelfswap.search.BookTitleIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class BookService {
+    public static final int DEFAULT_SEARCH_LIMIT = 20;
+    public static final int MAX_SEARCH_LIMIT = 50;
+    public static final int MAX_AUTOCOMPLETE_LIMIT = 10;
+    public static final int DEFAULT_OWNERS_LIMIT = 20;
+    public static final int MAX_OWNERS_LIMIT = 50;
+    public static final int DEFAULT_POPULAR_LIMIT = 20;
+    public static final int MAX_POPULAR_LIMIT = 100;
+    // Raised by the trigger in schema.sql.
+    private static final String SHELF_WISHLIST_EXCLUSIVE = "shelf_wishlist_exclusive";
+
     private final BookRepository bookRepository;
-    private final UserService userService;
     private final ShelfBookRepository shelfBookRepository;
     private final WishlistRepository wishlistRepository;
-    private final UserMapper userMapper;
+    private final BookMapper bookMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BookTitleIndex bookTitleIndex;
+    private final BookCatalogCache bookCatalogCache;
+    private final BookPopularityCounters bookPopularityCounters;
 
     public List<Book> getShelfBooksByUserId(UUID userId) {
         return shelfBookRepository.findShelfBooksByUserId(userId);
@@ -40,37 +68,41 @@ public class BookService {
         return wishlistRepository.findWishlistBookByUserId(userId);
     }
 
+    /**
+     * Adds with one insert that skips a book already on either list; the unique
+     * constraints and the shelf_wishlist_exclusive trigger decide concurrent duplicates.
+     * Adding a book that is already on the same list is still rejected as a duplicate.
+     */
     @Transactional
     public Book addToShelfOrWishlist(BookAddRequest request, UUID userId, Boolean toShelf) {
-        Book book;
-        if (!isBookInDb(request.getId())) {
-            book = addBookToDb(request);
-            log.info("New book added to DB with title: {}", book.getTitle());
-        } else {
-            book = getBookById(request.getId());
+        Book book = findOrInsertBook(request);
+        int inserted;
+        try {
+            inserted = toShelf
+                    ? shelfBookRepository.insertIfAbsent(userId, book.getId())
+                    : wishlistRepository.insertIfAbsent(userId, book.getId());
+        } catch (DataIntegrityViolationException ex) {
+            if (ex.getCause() instanceof ConstraintViolationException violation
+                    && SHELF_WISHLIST_EXCLUSIVE.equals(violation.getConstraintName())) {
+                throw exclusiveViolation(toShelf);
+            }
+            throw ex;
         }
-        User user = userService.getUserById(userId);
-
-        if (canBeAdded(user.getId(), book.getId(), toShelf)) {
-            if (toShelf) {
-                ShelfBook shelfBook = ShelfBook.builder()
-                        .user(user)
-                        .book(book)
-                        .build();
-                shelfBookRepository.save(shelfBook);
-
-                log.info("{} added to {}'s Shelf", book.getTitle(), user.getFirstName());
-            } else {
-                WishlistBook wishlistBook = WishlistBook.builder()
-                        .user(user)
-                        .book(book)
-                        .build();
-                wishlistRepository.save(wishlistBook);
-
-                log.info("{} added to {}'s Wishlist", book.getTitle(), user.getFirstName());
+
+        if (inserted == 0) {
+            boolean onOtherList = toShelf
+                    ? wishlistRepository.existsByUserIdAndBookId(userId, book.getId())
+                    : shelfBookRepository.existsByUserIdAndBookId(userId, book.getId());
+            if (onOtherList) {
+                throw exclusiveViolation(toShelf);
             }
+            throw new DuplicateExistsException(toShelf
+                    ? "Book is already in your Shelf."
+                    : "Book is already in your Wishlist.");
         }
 
+        log.info("{} added to user {}'s {}", book.getTitle(), userId, toShelf ? "Shelf" : "Wishlist");
+        eventPublisher.publishEvent(new ShelfChangeEvent(userId, book.getId(), toShelf, true));
         return book;
     }
 
@@ -93,61 +125,117 @@ public class BookService {
             wishlistRepository.deleteByUserIdAndBookId(userId, bookId);
             log.info("Book with ID {} removed from user {}'s wishlist", bookId, userId);
         }
+        eventPublisher.publishEvent(new ShelfChangeEvent(userId, bookId, fromShelf, false));
     }
 
-    private Book addBookToDb(BookAddRequest request) {
+    // Known books are usually cached, so only new ones reach the books table.
+    private Book findOrInsertBook(BookAddRequest request) {
+        Optional<Book> known = bookCatalogCache.find(request.getId());
+        if (known.isPresent()) {
+            return known.get();
+        }
+
         Book book = Book.builder()
                 .id(request.getId())
                 .title(request.getTitle())
                 .author(request.getAuthor())
                 .coverUrl(String.format("https://covers.openlibrary.org/b/id/%d-M.jpg", request.getCoverId()))
                 .build();
-        return bookRepository.save(book);
+        if (bookRepository.insertIfAbsent(book.getId(), book.getTitle(), book.getAuthor(), book.getCoverUrl()) == 0) {
+            // Stored since the cache last looked, e.g. by a dump ingestion; the filter may not know it yet.
+            Book stored = bookRepository.findById(book.getId())
+                    .orElseThrow(() -> new NotFoundException("No book with given ID"));
+            bookCatalogCache.remember(stored);
+            return stored;
+        }
+        log.info("New book added to DB with title: {}", book.getTitle());
+        eventPublisher.publishEvent(new BookCreatedEvent(book));
+        return book;
     }
 
-    private Boolean isBookInDb(String id) {
-        return bookRepository.existsById(id);
+    private MutuallyExclusiveException exclusiveViolation(boolean toShelf) {
+        return new MutuallyExclusiveException(toShelf
+                ? "Book is already in your wishlist. Cannot add to Shelf."
+                : "Book is already in your Shelf. Cannot add to Wishlist.");
     }
 
-    private Boolean canBeAdded(UUID userId, String bookId, Boolean shelf) {
-        if (shelf) {
-            if (wishlistRepository.existsByUserIdAndBookId(userId, bookId)) {
-                throw new MutuallyExclusiveException("Book is already in your wishlist. Cannot add to Shelf.");
-            }
-            if (shelfBookRepository.existsByUserIdAndBookId(userId, bookId)) {
-                throw new DuplicateExistsException("Book is already in your Shelf.");
-            }
-        } else {
-            if (shelfBookRepository.existsByUserIdAndBookId(userId, bookId)) {
-                throw new MutuallyExclusiveException("Book is already in your Shelf. Cannot add to Wishlist.");
-            }
-            if (wishlistRepository.existsByUserIdAndBookId(userId, bookId)) {
-                throw new DuplicateExistsException("Book is already in your Wishlist.");
-            }
-        }
-        return true;
+    private Boolean isBookInDb(String id) {
+        return bookCatalogCache.exists(id);
     }
 
     public Book getBookById(String id) {
-        return bookRepository.findById(id).orElseThrow(() -> new NotFoundException("No book with given ID"));
+        return bookCatalogCache.findStored(id).orElseThrow(() -> new NotFoundException("No book with given ID"));
     }
 
-    public List<Book> searchBooksByTitle(String title) {
+    public List<Book> searchBooksByTitle(String title, Integer page, Integer limit) {
         if (title == null || title.trim().isEmpty()) {
             return List.of();
         }
-        return bookRepository.findBooksByTitleContaining(title.trim());
+        int pageNumber = page == null ? 0 : Math.max(page, 0);
+        int pageSize = limit == null ? DEFAULT_SEARCH_LIMIT : Math.clamp(limit, 1, MAX_SEARCH_LIMIT);
+        if (bookTitleIndex.isReady()) {
+            return bookTitleIndex.search(title.trim(), pageNumber, pageSize);
+        }
+        return bookRepository.findBooksByTitleContaining(title.trim(), PageRequest.of(pageNumber, pageSize));
     }
 
-    public List<UserDTO> getUsersWhoHaveBook(String bookId, UUID currentUserId) {
+    public List<BookSearchResult> autocomplete(String prefix, Integer limit) {
+        if (prefix == null || prefix.isBlank() || !bookTitleIndex.isReady()) {
+            return List.of();
+        }
+        int size = limit == null ? MAX_AUTOCOMPLETE_LIMIT : Math.clamp(limit, 1, MAX_AUTOCOMPLETE_LIMIT);
+        return bookTitleIndex.autocomplete(prefix, size)
+                .stream()
+                .map(bookMapper::toSearchResult)
+                .toList();
+    }
+
+    public BookOwnerPage getUsersWhoHaveBook(String bookId, UUID currentUserId, String cursor, Integer limit,
+                                             boolean wantedFirst) {
         if (!isBookInDb(bookId)) {
             throw new NotFoundException("Book not found");
         }
-        
-        List<User> users = shelfBookRepository.findUsersByBookIdExcluding(bookId, currentUserId);
-        return users.stream()
-                .limit(20)
-                .map(userMapper::toDTO)
+
+        OwnerCursor position = OwnerCursor.decode(cursor);
+        int pageSize = limit == null ? DEFAULT_OWNERS_LIMIT : Math.clamp(limit, 1, MAX_OWNERS_LIMIT);
+        // One extra row tells us whether another page exists without a count query.
+        List<BookOwnerRow> rows = wantedFirst
+                ? shelfBookRepository.findOwnersWantedFirstAfter(bookId, currentUserId, position.isHasWantedBooks(),
+                        position.getShelvedAt(), position.getShelfId(), pageSize + 1)
+                : shelfBookRepository.findOwnersAfter(bookId, currentUserId,
+                        position.getShelvedAt(), position.getShelfId(), pageSize + 1);
+
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            BookOwnerRow last = rows.getLast();
+            nextCursor = new OwnerCursor(last.getHasWantedBooks(), last.getShelvedAt(), last.getShelfId()).encode();
+        }
+        return BookOwnerPage.builder()
+                .items(rows.stream().map(BookOwnerRow::toBookOwner).toList())
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    public BookPopularity getPopularity(String bookId) {
+        if (!isBookInDb(bookId)) {
+            throw new NotFoundException("Book not found");
+        }
+        return bookPopularityCounters.get(bookId);
+    }
+
+    public List<PopularBook> getPopularBooks(PopularityRanking ranking, Integer limit) {
+        int size = limit == null ? DEFAULT_POPULAR_LIMIT : Math.clamp(limit, 1, MAX_POPULAR_LIMIT);
+        List<BookPopularity> board = bookPopularityCounters.leaderboard(ranking, size);
+        Map<String, BookDTO> books = bookRepository.findAllById(board.stream().map(BookPopularity::getBookId).toList())
+                .stream()
+                .collect(Collectors.toMap(Book::getId, bookMapper::toDTO));
+        return board.stream()
+                .filter(popularity -> books.containsKey(popularity.getBookId()))
+                .map(popularity -> PopularBook.builder()
+                        .book(books.get(popularity.getBookId()))
+                        .popularity(popularity)
+                        .build())
                 .toList();
     }
 }
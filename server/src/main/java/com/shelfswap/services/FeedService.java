@@ -1,38 +1,159 @@
 package com.shelfswap.services;
 
+import com.shelfswap.cache.FeedCache;
+import com.shelfswap.dtos.BookDTO;
+import com.shelfswap.dtos.FeedCursor;
 import com.shelfswap.dtos.FeedItem;
+import com.shelfswap.dtos.FeedPage;
+import com.shelfswap.dtos.MatchedBook;
+import com.shelfswap.dtos.TradeCycleDTO;
+import com.shelfswap.dtos.TradeLegDTO;
 import com.shelfswap.dtos.UserDTO;
+import com.shelfswap.entities.Book;
+import com.shelfswap.index.TradeCycle;
+import com.shelfswap.index.TradeCycleFinder;
+import com.shelfswap.mappers.BookMapper;
 import com.shelfswap.repositories.BookRepository;
+import com.shelfswap.scoring.FeedScoringEngine;
+import com.shelfswap.scoring.ScoredCandidate;
 import com.shelfswap.repositories.UserRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * Pages through a user's mutual partners in score order. Each page is a single keyset
+ * query over all of the user's user_matches rows, so paging reaches every partner; the
+ * query reads every row of the user, and FeedCache keeps repeated pages off it.
+ */
 @Service
 @RequiredArgsConstructor
 public class FeedService {
+    public static final int DEFAULT_FEED_LIMIT = 10;
+    public static final int MAX_FEED_LIMIT = 50;
+
     private final UserRepository userRepository;
     private final BookRepository bookRepository;
+    private final TradeCycleFinder tradeCycleFinder;
+    private final BookMapper bookMapper;
+    private final FeedScoringEngine feedScoringEngine;
+    private final FeedCache feedCache;
+
+    @Value("${shelfswap.feed.cursor-secret}")
+    private String cursorSecret;
+
+    public FeedPage getFeedMatches(UUID userId, String cursor, Integer limit) {
+        FeedCursor position = FeedCursor.decode(cursor, cursorSecret);
+        int pageSize = limit == null ? DEFAULT_FEED_LIMIT : Math.clamp(limit, 1, MAX_FEED_LIMIT);
+        return feedCache.get(userId, position.encode(cursorSecret) + ":" + pageSize,
+                () -> computeFeedPage(userId, position, pageSize));
+    }
+
+    private FeedPage computeFeedPage(UUID userId, FeedCursor position, int pageSize) {
+        FeedCursor scored = position.isScored()
+                ? position
+                : position.scoredWith(System.currentTimeMillis(), feedScoringEngine.currentWeights());
+        // One extra row tells us whether another page exists without a count query.
+        List<ScoredCandidate> ranked = feedScoringEngine.rankAfter(userId, scored, pageSize + 1);
+
+        String nextCursor = null;
+        if (ranked.size() > pageSize) {
+            ranked = ranked.subList(0, pageSize);
+            ScoredCandidate last = ranked.getLast();
+            nextCursor = scored.after(last.getScore(), last.getUserId()).encode(cursorSecret);
+        }
+
+        List<UUID> partnerIds = ranked.stream().map(ScoredCandidate::getUserId).toList();
+        return FeedPage.builder()
+                .items(assembleFeedItems(userId, findUsersInOrder(partnerIds)))
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    public Optional<FeedItem> getFeedItem(UUID userId, UUID partnerId) {
+        return assembleFeedItems(userId, findUsersInOrder(List.of(partnerId))).stream().findFirst();
+    }
+
+    public List<TradeCycleDTO> getTradeCycles(UUID userId) {
+        List<TradeCycle> cycles = tradeCycleFinder.findCycles(userId);
+        if (cycles.isEmpty()) {
+            return List.of();
+        }
+        Set<UUID> userIds = new HashSet<>();
+        Set<String> bookIds = new HashSet<>();
+        cycles.forEach(cycle -> cycle.getLegs().forEach(leg -> {
+            userIds.add(leg.getGiverId());
+            bookIds.add(leg.getBookId());
+        }));
+        Map<UUID, UserDTO> users = userRepository.findDtosByIdIn(userIds)
+                .stream()
+                .collect(Collectors.toMap(UserDTO::getId, Function.identity()));
+        Map<String, BookDTO> books = bookRepository.findAllById(bookIds)
+                .stream()
+                .collect(Collectors.toMap(Book::getId, bookMapper::toDTO));
+
+        return cycles.stream()
+                .map(cycle -> TradeCycleDTO.builder()
+                        .legs(cycle.getLegs()
+                                .stream()
+                                .map(leg -> TradeLegDTO.builder()
+                                        .giver(users.get(leg.getGiverId()))
+                                        .receiver(users.get(leg.getReceiverId()))
+                                        .book(books.get(leg.getBookId()))
+                                        .build())
+                                .toList())
+                        .build())
+                .toList();
+    }
 
-    public List<FeedItem> getFeedMatches(UUID userId) {
-        Pageable range = PageRequest.of(0, 10);
-        List<UserDTO> matchedUsers = userRepository.findMutualUsers(userId, range);
+    private List<FeedItem> assembleFeedItems(UUID userId, List<UserDTO> matchedUsers) {
+        if (matchedUsers.isEmpty()) {
+            return List.of();
+        }
+        List<UUID> partnerIds = matchedUsers.stream().map(UserDTO::getId).toList();
+        Map<UUID, List<BookDTO>> theirBooks = groupByPartner(
+                bookRepository.findMatchedBooksTheyOwnByPartners(userId, partnerIds));
+        Map<UUID, List<BookDTO>> myBooks = groupByPartner(
+                bookRepository.findMatchedBooksIOwnByPartners(userId, partnerIds));
 
-        List<FeedItem> feedData = matchedUsers
+        return matchedUsers
                 .stream()
-                .map(userDto -> {
-                    return FeedItem.builder()
-                            .user(userDto)
-                            .theirBooks(bookRepository.findMatchedBooksTheyOwn(userId, userDto.getId()))
-                            .myBooks(bookRepository.findMatchedBooksIOwn(userId, userDto.getId()))
-                            .build();
-                })
+                .map(userDto -> FeedItem.builder()
+                        .user(userDto)
+                        .theirBooks(theirBooks.getOrDefault(userDto.getId(), List.of()))
+                        .myBooks(myBooks.getOrDefault(userDto.getId(), List.of()))
+                        .build())
                 .toList();
+    }
 
-        return feedData;
+    private Map<UUID, List<BookDTO>> groupByPartner(List<MatchedBook> rows) {
+        return rows.stream()
+                .collect(Collectors.groupingBy(
+                        MatchedBook::getPartnerId,
+                        Collectors.mapping(MatchedBook::toBookDTO, Collectors.toList())));
+    }
+
+    private List<UserDTO> findUsersInOrder(List<UUID> partnerIds) {
+        if (partnerIds.isEmpty()) {
+            return List.of();
+        }
+
+        Map<UUID, UserDTO> usersById = userRepository.findDtosByIdIn(partnerIds)
+                .stream()
+                .collect(Collectors.toMap(UserDTO::getId, Function.identity()));
+        return partnerIds.stream()
+                .map(usersById::get)
+                .filter(Objects::nonNull)
+                .toList();
     }
 }
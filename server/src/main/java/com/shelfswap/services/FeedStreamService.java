@@ -0,0 +1,106 @@
+package com.shelfswap.services;
+
+import com.shelfswap.dtos.FeedItem;
+import com.shelfswap.events.MatchChangeEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pushes feed deltas to subscribers over server-sent events. A delta's feed item is
+ * built once per user when the match changes, and only for users with a connection
+ * open, then shared by all of that user's connections. Match changes arrive on the
+ * thread of the shelf write that caused them, so the items are built on a small pool
+ * of delta threads instead. A subscriber that falls a full buffer behind is told to
+ * resync from /api/feed instead.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FeedStreamService {
+    private final FeedService feedService;
+
+    @Value("${shelfswap.feed.stream.buffer-size}")
+    private int bufferSize;
+
+    @Value("${shelfswap.feed.stream.heartbeat-ms}")
+    private long heartbeatMs;
+
+    @Value("${shelfswap.feed.stream.timeout-ms}")
+    private long timeoutMs;
+
+    @Value("${shelfswap.feed.stream.delta-threads}")
+    private int deltaThreads;
+
+    private SseBroker<Delta> broker;
+    private ExecutorService deltas;
+
+    @PostConstruct
+    void start() {
+        broker = new SseBroker<>("feed-stream", bufferSize, heartbeatMs, timeoutMs, FeedStreamService::send);
+        deltas = Executors.newFixedThreadPool(deltaThreads, Thread.ofVirtual().name("feed-deltas-", 0).factory());
+    }
+
+    public SseEmitter subscribe(UUID userId) {
+        return broker.subscribe(userId);
+    }
+
+    @EventListener
+    public void onMatchChange(MatchChangeEvent event) {
+        publishDelta(event.getUserId(), event.getPartnerId(), event.isMatched());
+        publishDelta(event.getPartnerId(), event.getUserId(), event.isMatched());
+    }
+
+    public int getSubscriberCount() {
+        return broker.getSubscriberCount();
+    }
+
+    @PreDestroy
+    void stop() {
+        deltas.shutdownNow();
+        broker.close();
+    }
+
+    private void publishDelta(UUID userId, UUID partnerId, boolean matched) {
+        if (broker.hasSubscribers(userId)) {
+            deltas.execute(() -> buildDelta(userId, partnerId, matched));
+        }
+    }
+
+    private void buildDelta(UUID userId, UUID partnerId, boolean matched) {
+        Optional<FeedItem> item;
+        try {
+            item = feedService.getFeedItem(userId, partnerId);
+        } catch (RuntimeException ex) {
+            log.warn("Could not build the feed delta for user {} and partner {}", userId, partnerId, ex);
+            return;
+        }
+        if (item.isEmpty()) {
+            return;
+        }
+        FeedItem payload = matched
+                ? item.get()
+                : FeedItem.builder().user(item.get().getUser()).theirBooks(List.of()).myBooks(List.of()).build();
+        broker.publish(userId, new Delta(matched ? "match-added" : "match-removed", payload));
+    }
+
+    private static void send(UUID userId, SseEmitter emitter, Delta delta) throws IOException {
+        emitter.send(SseEmitter.event().name(delta.name()).data(delta.item(), MediaType.APPLICATION_JSON));
+    }
+
+    private record Delta(String name, FeedItem item) {
+    }
+}
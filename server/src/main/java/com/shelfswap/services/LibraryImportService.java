@@ -0,0 +1,427 @@
+package com.shelfswap.services;
+
+import com.shelfswap.dtos.BookAddRequest;
+import com.shelfswap.dtos.ImportProgress;
+import com.shelfswap.dtos.ImportRowError;
+import com.shelfswap.entities.Book;
+import com.shelfswap.events.BookCreatedEvent;
+import com.shelfswap.events.ShelfBatchEvent;
+import com.shelfswap.utils.CsvReader;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.RestClientException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Imports a Goodreads or StoryGraph library export. The CSV is read one record at a time
+ * and handled in chunks: the chunk's rows are resolved to Open Library works (batched by
+ * ISBN, then by title and author), and written with JDBC batches in one transaction per
+ * chunk. A chunk that fails, e.g. because one of its books was added to the other list
+ * meanwhile, is written again row by row so only the offending rows are lost. "to-read"
+ * rows go to the wishlist, everything else to the shelf. The request only checks the
+ * header; the rows are imported in the background from a temporary copy of the upload
+ * and followed through getProgress.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LibraryImportService {
+    private static final int ISBN_BATCH_SIZE = 50;
+    private static final int MAX_REPORTED_ERRORS = 1_000;
+    private static final String SHELF_WISHLIST_EXCLUSIVE = "shelf_wishlist_exclusive";
+
+    private static final String INSERT_BOOK = """
+        INSERT INTO books (id, title, author, cover_url, created_at)
+        VALUES (?, ?, ?, ?, now())
+        ON CONFLICT (id) DO NOTHING
+    """;
+    private static final String INSERT_SHELF_BOOK = """
+        INSERT INTO shelf_books (id, user_id, book_id, created_at)
+        SELECT gen_random_uuid(), ?, ?, now()
+        WHERE NOT EXISTS (SELECT 1 FROM wishlist_books w WHERE w.user_id = ? AND w.book_id = ?)
+        ON CONFLICT (user_id, book_id) DO NOTHING
+    """;
+    private static final String INSERT_WISHLIST_BOOK = """
+        INSERT INTO wishlist_books (id, user_id, book_id, created_at)
+        SELECT gen_random_uuid(), ?, ?, now()
+        WHERE NOT EXISTS (SELECT 1 FROM shelf_books s WHERE s.user_id = ? AND s.book_id = ?)
+        ON CONFLICT (user_id, book_id) DO NOTHING
+    """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OpenLibraryClient openLibraryClient;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${shelfswap.import.chunk-size}")
+    private int chunkSize;
+
+    @Value("${shelfswap.import.job-ttl-ms}")
+    private long jobTtlMs;
+
+    // The latest import of each user, kept for a while after it finishes so its progress can still be read.
+    private final Map<UUID, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    /*
+     * Takes over the uploaded file: it is read through while the rows are imported and
+     * deleted once the import finishes, or right away if the header is rejected.
+     */
+    public ImportProgress startImport(UUID userId, Path file) throws IOException {
+        CsvReader csv = new CsvReader(Files.newBufferedReader(file, StandardCharsets.UTF_8));
+        ImportJob job = new ImportJob();
+        try {
+            Columns columns = Columns.from(csv.readRecord());
+            jobs.compute(userId, (id, previous) -> {
+                if (previous != null && !previous.done) {
+                    throw new IllegalStateException("An import is already running for this account");
+                }
+                return job;
+            });
+            Thread.ofVirtual().name("import-" + userId).start(() -> importRows(userId, csv, columns, job, file));
+        } catch (IOException | RuntimeException ex) {
+            csv.close();
+            Files.deleteIfExists(file);
+            throw ex;
+        }
+        return job.toProgress();
+    }
+
+    public Optional<ImportProgress> getProgress(UUID userId) {
+        return Optional.ofNullable(jobs.get(userId)).map(ImportJob::toProgress);
+    }
+
+    @Scheduled(fixedDelayString = "${shelfswap.import.job-ttl-ms}")
+    public void evictFinishedJobs() {
+        long finishedBefore = System.currentTimeMillis() - jobTtlMs;
+        jobs.values().removeIf(job -> job.done && job.finishedAt < finishedBefore);
+    }
+
+    private void importRows(UUID userId, CsvReader csv, Columns columns, ImportJob job, Path file) {
+        long start = System.currentTimeMillis();
+        try (csv; ExecutorService lookups = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<ImportRow> chunk = new ArrayList<>(chunkSize);
+            List<String> record;
+            int rowNumber = 1;
+            while ((record = csv.readRecord()) != null) {
+                rowNumber++;
+                if (record.size() == 1 && record.getFirst().isBlank()) {
+                    continue;
+                }
+                job.rowsRead.increment();
+                chunk.add(columns.toRow(rowNumber, record));
+                if (chunk.size() == chunkSize) {
+                    importChunk(userId, chunk, job, lookups);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                importChunk(userId, chunk, job, lookups);
+            }
+        } catch (IOException | RuntimeException ex) {
+            log.error("Import for user {} stopped after {} rows", userId, job.rowsRead.sum(), ex);
+        } finally {
+            deleteUpload(file);
+            job.finish();
+        }
+        log.info("Imported {} of {} rows for user {} in {} ms",
+                job.imported.sum(), job.rowsRead.sum(), userId, System.currentTimeMillis() - start);
+    }
+
+    private static void deleteUpload(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            log.warn("Could not delete import upload {}", file, ex);
+        }
+    }
+
+    private void importChunk(UUID userId, List<ImportRow> rows, ImportJob job, ExecutorService lookups) {
+        Map<ImportRow, BookAddRequest> resolved = resolve(rows, job, lookups);
+        if (resolved.isEmpty()) {
+            return;
+        }
+        try {
+            job.add(transactionTemplate.execute(status -> write(userId, resolved)));
+        } catch (DataAccessException ex) {
+            log.info("Import chunk for user {} failed, writing its rows one by one: {}", userId, ex.getMessage());
+            resolved.forEach((row, book) -> importRow(userId, row, book, job));
+        }
+    }
+
+    private void importRow(UUID userId, ImportRow row, BookAddRequest book, ImportJob job) {
+        try {
+            job.add(transactionTemplate.execute(status -> write(userId, Map.of(row, book))));
+        } catch (DataAccessException ex) {
+            if (ex instanceof DataIntegrityViolationException && ex.getMessage().contains(SHELF_WISHLIST_EXCLUSIVE)) {
+                // Added to the other list while the chunk was written; counted like a row already there.
+                job.skipped.increment();
+                return;
+            }
+            log.warn("Import row {} for user {} failed", row.row(), userId, ex);
+            job.fail(row, "Could not be saved");
+        }
+    }
+
+    private Map<ImportRow, BookAddRequest> resolve(List<ImportRow> rows, ImportJob job, ExecutorService lookups) {
+        Map<ImportRow, BookAddRequest> resolved = new LinkedHashMap<>();
+        List<ImportRow> byIsbn = new ArrayList<>();
+        for (ImportRow row : rows) {
+            if (row.olKey() != null && row.title() != null && row.author() != null) {
+                resolved.put(row, BookAddRequest.builder().id(row.olKey()).title(row.title()).author(row.author()).build());
+            } else if (row.isbn() != null) {
+                byIsbn.add(row);
+            } else if (row.title() == null) {
+                job.fail(row, "Row has no title or ISBN");
+            }
+        }
+
+        List<Future<Map<String, BookAddRequest>>> isbnLookups = new ArrayList<>();
+        for (int from = 0; from < byIsbn.size(); from += ISBN_BATCH_SIZE) {
+            List<String> isbns = byIsbn.subList(from, Math.min(from + ISBN_BATCH_SIZE, byIsbn.size()))
+                    .stream()
+                    .map(ImportRow::isbn)
+                    .toList();
+            isbnLookups.add(lookups.submit(() -> openLibraryClient.findByIsbns(isbns)));
+        }
+        Map<String, BookAddRequest> byIsbnResult = new HashMap<>();
+        isbnLookups.forEach(lookup -> byIsbnResult.putAll(await(lookup).orElse(Map.of())));
+
+        // Rows whose ISBN Open Library does not know fall back to title and author.
+        Map<ImportRow, Future<Optional<BookAddRequest>>> titleLookups = new LinkedHashMap<>();
+        for (ImportRow row : rows) {
+            if (resolved.containsKey(row) || (row.isbn() == null && row.title() == null)) {
+                continue;
+            }
+            BookAddRequest book = row.isbn() == null ? null : byIsbnResult.get(row.isbn());
+            if (book != null) {
+                resolved.put(row, book);
+            } else if (row.title() == null) {
+                job.fail(row, "No matching book found on Open Library");
+            } else {
+                titleLookups.put(row, lookups.submit(() -> openLibraryClient.findByTitleAndAuthor(row.title(), row.author())));
+            }
+        }
+        titleLookups.forEach((row, lookup) -> {
+            Optional<BookAddRequest> book = await(lookup).flatMap(found -> found);
+            if (book.isPresent()) {
+                resolved.put(row, book.get());
+            } else {
+                job.fail(row, "No matching book found on Open Library");
+            }
+        });
+        return resolved;
+    }
+
+    /*
+     * Writes in book ID order, so concurrent imports take their row and advisory locks in the
+     * same order. The added books are published as one ShelfBatchEvent, so the match deltas
+     * are applied once for the chunk rather than once per row.
+     */
+    private ChunkResult write(UUID userId, Map<ImportRow, BookAddRequest> resolved) {
+        Map<String, BookAddRequest> books = new TreeMap<>();
+        resolved.values().forEach(book -> books.putIfAbsent(book.getId(), book));
+        List<BookAddRequest> bookList = new ArrayList<>(books.values());
+        int[][] created = jdbcTemplate.batchUpdate(INSERT_BOOK, bookList, bookList.size(), (ps, book) -> {
+            ps.setString(1, book.getId());
+            ps.setString(2, book.getTitle());
+            ps.setString(3, book.getAuthor());
+            ps.setString(4, coverUrl(book));
+        });
+        for (int i = 0; i < bookList.size(); i++) {
+            if (created[0][i] > 0) {
+                BookAddRequest book = bookList.get(i);
+                eventPublisher.publishEvent(new BookCreatedEvent(Book.builder()
+                        .id(book.getId())
+                        .title(book.getTitle())
+                        .author(book.getAuthor())
+                        .coverUrl(coverUrl(book))
+                        .build()));
+            }
+        }
+
+        Map<Boolean, List<String>> added = new HashMap<>();
+        int skipped = 0;
+        for (boolean shelf : new boolean[]{true, false}) {
+            List<String> bookIds = resolved.entrySet()
+                    .stream()
+                    .filter(entry -> entry.getKey().shelf() == shelf)
+                    .map(entry -> entry.getValue().getId())
+                    .sorted()
+                    .toList();
+            if (bookIds.isEmpty()) {
+                continue;
+            }
+            int[][] inserted = jdbcTemplate.batchUpdate(shelf ? INSERT_SHELF_BOOK : INSERT_WISHLIST_BOOK,
+                    bookIds, bookIds.size(), (ps, bookId) -> {
+                        ps.setObject(1, userId);
+                        ps.setString(2, bookId);
+                        ps.setObject(3, userId);
+                        ps.setString(4, bookId);
+                    });
+            List<String> addedIds = new ArrayList<>(bookIds.size());
+            for (int i = 0; i < bookIds.size(); i++) {
+                if (inserted[0][i] > 0) {
+                    addedIds.add(bookIds.get(i));
+                } else {
+                    skipped++;
+                }
+            }
+            added.put(shelf, addedIds);
+        }
+        List<String> shelfIds = added.getOrDefault(true, List.of());
+        List<String> wishlistIds = added.getOrDefault(false, List.of());
+        if (!shelfIds.isEmpty() || !wishlistIds.isEmpty()) {
+            eventPublisher.publishEvent(new ShelfBatchEvent(userId, shelfIds, wishlistIds));
+        }
+        return new ChunkResult(shelfIds.size() + wishlistIds.size(), skipped);
+    }
+
+    private static String coverUrl(BookAddRequest book) {
+        return book.getCoverId() == null
+                ? null
+                : String.format("https://covers.openlibrary.org/b/id/%d-M.jpg", book.getCoverId());
+    }
+
+    private static <T> Optional<T> await(Future<T> lookup) {
+        try {
+            return Optional.ofNullable(lookup.get());
+        } catch (ExecutionException ex) {
+            if (!(ex.getCause() instanceof RestClientException)) {
+                throw new IllegalStateException(ex.getCause());
+            }
+            log.warn("Open Library lookup failed: {}", ex.getCause().getMessage());
+            return Optional.empty();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        }
+    }
+
+    private record ImportRow(int row, String title, String author, String isbn, String olKey, boolean shelf) {
+    }
+
+    private record ChunkResult(int imported, int skipped) {
+    }
+
+    // Column positions, found by header name since the two exports name them differently.
+    private record Columns(int title, int author, int isbn13, int isbn, int olKey, int status) {
+        static Columns from(List<String> header) {
+            if (header == null) {
+                throw new IllegalArgumentException("The CSV file is empty");
+            }
+            List<String> names = header.stream()
+                    .map(name -> name.replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT))
+                    .toList();
+            Columns columns = new Columns(
+                    names.indexOf("title"),
+                    Math.max(names.indexOf("author"), names.indexOf("authors")),
+                    names.indexOf("isbn13"),
+                    Math.max(names.indexOf("isbn"), names.indexOf("isbn/uid")),
+                    Math.max(names.indexOf("open library id"), names.indexOf("olid")),
+                    Math.max(names.indexOf("exclusive shelf"), names.indexOf("read status"))
+            );
+            if (columns.title < 0 && columns.isbn13 < 0 && columns.isbn < 0) {
+                throw new IllegalArgumentException("The CSV file has no Title or ISBN column");
+            }
+            return columns;
+        }
+
+        ImportRow toRow(int row, List<String> record) {
+            String preferredIsbn = normalizeIsbn(field(record, isbn13));
+            return new ImportRow(
+                    row,
+                    field(record, title),
+                    field(record, author),
+                    preferredIsbn != null ? preferredIsbn : normalizeIsbn(field(record, isbn)),
+                    BookAddRequest.extractOLKey(field(record, olKey)),
+                    !"to-read".equalsIgnoreCase(field(record, status))
+            );
+        }
+
+        private static String field(List<String> record, int index) {
+            if (index < 0 || index >= record.size() || record.get(index).isBlank()) {
+                return null;
+            }
+            return record.get(index).trim();
+        }
+
+        // Goodreads wraps ISBNs as ="0439023483"; StoryGraph puts its own IDs in the same column.
+        private static String normalizeIsbn(String value) {
+            if (value == null) {
+                return null;
+            }
+            String digits = value.replaceAll("[^0-9Xx]", "").toUpperCase(Locale.ROOT);
+            return digits.length() == 10 || digits.length() == 13 ? digits : null;
+        }
+    }
+
+    private static class ImportJob {
+        private final LongAdder rowsRead = new LongAdder();
+        private final LongAdder imported = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final List<ImportRowError> errors = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean done = false;
+        private volatile long finishedAt;
+
+        void finish() {
+            finishedAt = System.currentTimeMillis();
+            done = true;
+        }
+
+        void add(ChunkResult result) {
+            imported.add(result.imported());
+            skipped.add(result.skipped());
+        }
+
+        void fail(ImportRow row, String message) {
+            failed.increment();
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ImportRowError(row.row(), row.title(), message));
+            }
+        }
+
+        ImportProgress toProgress() {
+            List<ImportRowError> reported;
+            synchronized (errors) {
+                reported = List.copyOf(errors);
+            }
+            return ImportProgress.builder()
+                    .rowsRead(rowsRead.sum())
+                    .imported(imported.sum())
+                    .skipped(skipped.sum())
+                    .failed(failed.sum())
+                    .errors(reported)
+                    .done(done)
+                    .build();
+        }
+    }
+}
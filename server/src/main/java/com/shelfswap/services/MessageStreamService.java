@@ -0,0 +1,83 @@
+package com.shelfswap.services;
+
+import com.shelfswap.dtos.ConversationStatusChange;
+import com.shelfswap.events.ConversationStatusEvent;
+import com.shelfswap.events.MessageSentEvent;
+import com.shelfswap.events.MessagesReadEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Pushes messages, read receipts and request status changes to both participants of a
+ * conversation over server-sent events, once the change has committed. Every open
+ * connection of a user gets the event, so a user's other devices stay in step too. A
+ * connection that falls a full buffer behind is told to resync from /api/messages.
+ */
+@Service
+public class MessageStreamService {
+    @Value("${shelfswap.messages.stream.buffer-size}")
+    private int bufferSize;
+
+    @Value("${shelfswap.messages.stream.heartbeat-ms}")
+    private long heartbeatMs;
+
+    @Value("${shelfswap.messages.stream.timeout-ms}")
+    private long timeoutMs;
+
+    private SseBroker<StreamEvent> broker;
+
+    @PostConstruct
+    void start() {
+        broker = new SseBroker<>("message-stream", bufferSize, heartbeatMs, timeoutMs, MessageStreamService::send);
+    }
+
+    public SseEmitter subscribe(UUID userId) {
+        return broker.subscribe(userId);
+    }
+
+    @TransactionalEventListener
+    public void onMessageSent(MessageSentEvent event) {
+        StreamEvent message = new StreamEvent("message", event.getMessage());
+        broker.publish(event.getMessage().getSender().getId(), message);
+        broker.publish(event.getRecipientId(), message);
+    }
+
+    @TransactionalEventListener
+    public void onMessagesRead(MessagesReadEvent event) {
+        StreamEvent receipt = new StreamEvent("read", event.getReceipt());
+        broker.publish(event.getReceipt().getReaderId(), receipt);
+        broker.publish(event.getSenderId(), receipt);
+    }
+
+    @TransactionalEventListener
+    public void onConversationStatus(ConversationStatusEvent event) {
+        ConversationStatusChange change = event.getChange();
+        StreamEvent status = new StreamEvent("request-" + change.getStatus().name().toLowerCase(), change);
+        broker.publish(change.getInitiatorId(), status);
+        broker.publish(change.getRecipientId(), status);
+    }
+
+    public int getSubscriberCount() {
+        return broker.getSubscriberCount();
+    }
+
+    @PreDestroy
+    void stop() {
+        broker.close();
+    }
+
+    private static void send(UUID userId, SseEmitter emitter, StreamEvent event) throws IOException {
+        emitter.send(SseEmitter.event().name(event.name()).data(event.payload(), MediaType.APPLICATION_JSON));
+    }
+
+    private record StreamEvent(String name, Object payload) {
+    }
+}
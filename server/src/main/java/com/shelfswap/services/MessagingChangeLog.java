@@ -0,0 +1,156 @@
+package com.shelfswap.services;
+
+import com.shelfswap.dtos.ConversationStatusChange;
+import com.shelfswap.entities.Conversation;
+import com.shelfswap.entities.MessagingChange;
+import com.shelfswap.entities.MessagingSyncState;
+import com.shelfswap.events.ConversationStatusEvent;
+import com.shelfswap.events.MessageSentEvent;
+import com.shelfswap.events.MessagesReadEvent;
+import com.shelfswap.repositories.MessagingChangeRepository;
+import com.shelfswap.repositories.MessagingSyncStateRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+/**
+ * Per-user append-only log of messaging changes, written in the same transaction as the
+ * change from the messaging domain events. Sequence numbers come from a per-user counter
+ * row that stays locked until commit, so a user's entries commit in sequence order and a
+ * sync reading up to N can never later see an entry below N appear. Long-polling syncs
+ * wait on an in-process signal raised after commit; on other nodes they simply time out
+ * and read again.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MessagingChangeLog {
+    private static final String APPEND = """
+        WITH next AS (
+            INSERT INTO messaging_sync_state (user_id, last_seq)
+            VALUES (?, 1)
+            ON CONFLICT (user_id) DO UPDATE SET last_seq = messaging_sync_state.last_seq + 1
+            RETURNING last_seq
+        )
+        INSERT INTO messaging_changes (user_id, seq, kind, conversation_id, message_id, actor_id, created_at)
+        SELECT ?, last_seq, ?, ?, ?, ?, now()
+        FROM next
+    """;
+
+    private final MessagingChangeRepository messagingChangeRepository;
+    private final MessagingSyncStateRepository messagingSyncStateRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${shelfswap.messages.sync.retention-days}")
+    private long retentionDays;
+
+    private final Map<UUID, CompletableFuture<Void>> signals = new ConcurrentHashMap<>();
+
+    @EventListener
+    public void onMessageSent(MessageSentEvent event) {
+        append(MessagingChange.Kind.MESSAGE, event.getMessage().getConversationId(), event.getMessage().getId(),
+                event.getMessage().getSender().getId(), event.getMessage().getSender().getId(), event.getRecipientId());
+    }
+
+    @EventListener
+    public void onMessagesRead(MessagesReadEvent event) {
+        UUID readerId = event.getReceipt().getReaderId();
+        append(MessagingChange.Kind.READ, event.getReceipt().getConversationId(), null,
+                readerId, readerId, event.getSenderId());
+    }
+
+    @EventListener
+    public void onConversationStatus(ConversationStatusEvent event) {
+        ConversationStatusChange change = event.getChange();
+        // A new request is made by the initiator; accepting or rejecting it by the recipient.
+        UUID actorId = change.getStatus() == Conversation.ConversationStatus.PENDING
+                ? change.getInitiatorId()
+                : change.getRecipientId();
+        append(MessagingChange.Kind.CONVERSATION, change.getConversationId(), null,
+                actorId, change.getInitiatorId(), change.getRecipientId());
+    }
+
+    @TransactionalEventListener
+    public void afterMessageSent(MessageSentEvent event) {
+        signal(event.getMessage().getSender().getId(), event.getRecipientId());
+    }
+
+    @TransactionalEventListener
+    public void afterMessagesRead(MessagesReadEvent event) {
+        signal(event.getReceipt().getReaderId(), event.getSenderId());
+    }
+
+    @TransactionalEventListener
+    public void afterConversationStatus(ConversationStatusEvent event) {
+        signal(event.getChange().getInitiatorId(), event.getChange().getRecipientId());
+    }
+
+    public long currentSeq(UUID userId) {
+        return messagingSyncStateRepository.findById(userId).map(MessagingSyncState::getLastSeq).orElse(0L);
+    }
+
+    // The oldest sequence number still in the log, or the next one to be handed out if none is.
+    public long firstRetainedSeq(UUID userId) {
+        Long first = messagingChangeRepository.findFirstSeq(userId);
+        return first != null ? first : currentSeq(userId) + 1;
+    }
+
+    public List<MessagingChange> read(UUID userId, long since, int limit) {
+        return messagingChangeRepository.findByUserIdAndSeqGreaterThanOrderBySeq(userId, since, Limit.of(limit));
+    }
+
+    // Take the signal before reading, so a change committed between the read and the wait still wakes it.
+    public CompletableFuture<Void> signalFor(UUID userId) {
+        return signals.computeIfAbsent(userId, id -> new CompletableFuture<>());
+    }
+
+    public void await(CompletableFuture<Void> signal, long timeoutMs) {
+        try {
+            signal.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException ex) {
+            // Nothing changed in time; the caller reads once more and returns.
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Scheduled(cron = "${shelfswap.messages.sync.prune-cron}")
+    @Transactional
+    public void prune() {
+        int deleted = messagingChangeRepository.deleteCreatedBefore(LocalDateTime.now().minusDays(retentionDays));
+        log.info("Pruned {} messaging changes older than {} days", deleted, retentionDays);
+    }
+
+    // Users are locked in a fixed order so two changes touching the same pair cannot deadlock.
+    private void append(MessagingChange.Kind kind, UUID conversationId, UUID messageId, UUID actorId, UUID... userIds) {
+        Stream.of(userIds).distinct().sorted().forEach(userId -> jdbcTemplate.update(APPEND,
+                userId, userId, kind.name(), conversationId, messageId, actorId));
+    }
+
+    private void signal(UUID... userIds) {
+        for (UUID userId : userIds) {
+            CompletableFuture<Void> signal = signals.remove(userId);
+            if (signal != null) {
+                signal.complete(null);
+            }
+        }
+    }
+}
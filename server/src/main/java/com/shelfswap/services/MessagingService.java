@@ -1,31 +1,73 @@
 package com.shelfswap.services;
 
+import com.shelfswap.cache.UnreadCountCache;
+import com.shelfswap.dtos.ConversationCursor;
 import com.shelfswap.dtos.ConversationDTO;
+import com.shelfswap.dtos.ConversationPage;
+import com.shelfswap.dtos.ConversationStatusChange;
+import com.shelfswap.dtos.MessageCursor;
 import com.shelfswap.dtos.MessageDTO;
+import com.shelfswap.dtos.MessagePage;
+import com.shelfswap.dtos.MessageSearchHit;
+import com.shelfswap.dtos.MessageSearchPage;
+import com.shelfswap.dtos.MessagingSync;
+import com.shelfswap.dtos.ReadReceipt;
+import com.shelfswap.dtos.ReadWatermark;
+import com.shelfswap.dtos.UnreadCounts;
 import com.shelfswap.entities.Conversation;
 import com.shelfswap.entities.Message;
+import com.shelfswap.entities.MessagingChange;
 import com.shelfswap.entities.User;
+import com.shelfswap.events.ConversationStatusEvent;
+import com.shelfswap.events.MessageSentEvent;
+import com.shelfswap.events.MessagesReadEvent;
 import com.shelfswap.exceptions.UserNotFoundException;
 import com.shelfswap.mappers.UserMapper;
 import com.shelfswap.repositories.ConversationRepository;
 import com.shelfswap.repositories.MessageRepository;
+import com.shelfswap.search.MessageSearchIndex;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class MessagingService {
     
+    public static final int DEFAULT_CONVERSATION_PAGE_SIZE = 30;
+    public static final int MAX_CONVERSATION_PAGE_SIZE = 100;
+    public static final int DEFAULT_MESSAGE_PAGE_SIZE = 50;
+    private static final String ACCEPTED = Conversation.ConversationStatus.ACCEPTED.name();
+    private static final String PENDING = Conversation.ConversationStatus.PENDING.name();
+    public static final int MAX_MESSAGE_PAGE_SIZE = 100;
+    public static final int SYNC_BATCH_SIZE = 500;
+    public static final long MAX_SYNC_WAIT_MS = 30_000;
+    public static final int DEFAULT_SEARCH_PAGE_SIZE = 20;
+    public static final int MAX_SEARCH_PAGE_SIZE = 50;
+    
     private final ConversationRepository conversationRepository;
     private final MessageRepository messageRepository;
     private final UserService userService;
     private final UserMapper userMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UnreadCountCache unreadCountCache;
+    private final MessagingChangeLog messagingChangeLog;
+    private final MessageSearchIndex messageSearchIndex;
     
     @Transactional
     public ConversationDTO startConversation(UUID initiatorId, UUID recipientId, String initialMessage) {
@@ -52,17 +94,19 @@ public class MessagingService {
         
         conversation = conversationRepository.save(conversation);
         
+        ConversationDTO conversationDTO = mapToDTO(conversation, initiatorId);
         if (hasMutualBooks) {
-            Message message = Message.builder()
-                .conversation(conversation)
-                .sender(initiator)
-                .content(initialMessage)
-                .build();
-            
-            messageRepository.save(message);
+            Message message = saveMessage(conversation, initiator, initialMessage);
+            eventPublisher.publishEvent(new MessageSentEvent(mapMessageToDTO(message, conversation), recipientId));
+            // The summary was written by recordMessage, behind the persistence context.
+            conversationDTO.setLastMessageAt(message.getSentAt());
+            conversationDTO.setLastMessage(preview(initialMessage));
+            conversationDTO.setLastMessageSenderId(initiatorId);
+        } else {
+            publishStatus(conversation);
         }
         
-        return mapToDTO(conversation, initiatorId);
+        return conversationDTO;
     }
     
     @Transactional
@@ -80,6 +124,7 @@ public class MessagingService {
         
         conversation.setStatus(Conversation.ConversationStatus.ACCEPTED);
         conversationRepository.save(conversation);
+        publishStatus(conversation);
     }
     
     @Transactional
@@ -97,6 +142,7 @@ public class MessagingService {
         
         conversation.setStatus(Conversation.ConversationStatus.REJECTED);
         conversationRepository.save(conversation);
+        publishStatus(conversation);
     }
     
     @Transactional
@@ -114,32 +160,28 @@ public class MessagingService {
         }
         
         User sender = userService.getUserById(senderId);
+        Message message = saveMessage(conversation, sender, content);
         
-        Message message = Message.builder()
-            .conversation(conversation)
-            .sender(sender)
-            .content(content)
-            .build();
-        
-        message = messageRepository.save(message);
-        
-        return MessageDTO.builder()
+        MessageDTO messageDTO = MessageDTO.builder()
             .id(message.getId())
             .conversationId(conversationId)
             .sender(userMapper.toDTO(sender))
             .content(message.getContent())
             .sentAt(message.getSentAt())
-            .isRead(message.isRead())
+            .isRead(false)
             .build();
+        UUID recipientId = conversation.getInitiator().getId().equals(senderId)
+            ? conversation.getRecipient().getId()
+            : conversation.getInitiator().getId();
+        eventPublisher.publishEvent(new MessageSentEvent(messageDTO, recipientId));
+        return messageDTO;
     }
     
-    public List<ConversationDTO> getUserConversations(UUID userId) {
-        List<Conversation> conversations = conversationRepository.findByUserOrderByLastMessageAtDesc(userId);
-        
-        return conversations.stream()
-            .filter(c -> c.getStatus() == Conversation.ConversationStatus.ACCEPTED)
-            .map(c -> mapToDTO(c, userId))
-            .collect(Collectors.toList());
+    public ConversationPage getUserConversations(UUID userId, String cursor, Integer limit) {
+        ConversationCursor position = ConversationCursor.decode(cursor);
+        int pageSize = pageSize(limit);
+        return pageOf(userId, conversationRepository.findIdsByParticipantAndStatus(userId, ACCEPTED,
+            position.getLastMessageAt(), position.getConversationId(), pageSize + 1), pageSize);
     }
     
     public ConversationDTO findConversationBetweenUsers(UUID user1Id, UUID user2Id) {
@@ -149,23 +191,55 @@ public class MessagingService {
             .orElse(null);
     }
     
-    public List<ConversationDTO> getPendingMessageRequests(UUID userId) {
-        List<Conversation> pendingRequests = conversationRepository.findPendingRequestsByRecipient(userId);
-        
-        return pendingRequests.stream()
-            .map(c -> mapToDTO(c, userId))
-            .collect(Collectors.toList());
+    public ConversationPage getPendingMessageRequests(UUID userId, String cursor, Integer limit) {
+        ConversationCursor position = ConversationCursor.decode(cursor);
+        int pageSize = pageSize(limit);
+        return pageOf(userId, conversationRepository.findIdsByRecipientAndStatus(userId, PENDING,
+            position.getLastMessageAt(), position.getConversationId(), pageSize + 1), pageSize);
+    }
+    
+    public ConversationPage getSentMessageRequests(UUID userId, String cursor, Integer limit) {
+        ConversationCursor position = ConversationCursor.decode(cursor);
+        int pageSize = pageSize(limit);
+        return pageOf(userId, conversationRepository.findIdsByInitiatorAndStatus(userId, PENDING,
+            position.getLastMessageAt(), position.getConversationId(), pageSize + 1), pageSize);
     }
     
-    public List<ConversationDTO> getSentMessageRequests(UUID userId) {
-        List<Conversation> sentRequests = conversationRepository.findPendingRequestsByInitiator(userId);
+    // The ID query walks the index; a second query fetch-joins both participants of just that page.
+    private ConversationPage pageOf(UUID userId, List<UUID> ids, int pageSize) {
+        // One extra ID tells us whether another page exists without a count query.
+        boolean hasMore = ids.size() > pageSize;
+        List<UUID> pageIds = ids.subList(0, Math.min(ids.size(), pageSize));
+        if (pageIds.isEmpty()) {
+            return ConversationPage.builder().items(List.of()).build();
+        }
+        Map<UUID, Conversation> conversations = conversationRepository.findWithParticipantsByIdIn(pageIds)
+            .stream()
+            .collect(Collectors.toMap(Conversation::getId, Function.identity()));
+        List<Conversation> ordered = pageIds.stream()
+            .map(conversations::get)
+            .filter(Objects::nonNull)
+            .toList();
         
-        return sentRequests.stream()
-            .map(c -> mapToDTO(c, userId))
-            .collect(Collectors.toList());
+        String nextCursor = null;
+        if (hasMore && !ordered.isEmpty()) {
+            Conversation last = ordered.getLast();
+            nextCursor = new ConversationCursor(last.getLastMessageAt(), last.getId()).encode();
+        }
+        return ConversationPage.builder()
+            .items(ordered.stream().map(c -> mapToDTO(c, userId)).toList())
+            .nextCursor(nextCursor)
+            .build();
     }
     
-    public List<MessageDTO> getConversationMessages(UUID conversationId, UUID userId, int page, int size) {
+    private static int pageSize(Integer limit) {
+        return limit == null ? DEFAULT_CONVERSATION_PAGE_SIZE : Math.clamp(limit, 1, MAX_CONVERSATION_PAGE_SIZE);
+    }
+    
+    public MessagePage getConversationMessages(UUID conversationId, UUID userId, String before, String after, Integer size) {
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("Pass either before or after, not both");
+        }
         Conversation conversation = conversationRepository.findById(conversationId)
             .orElseThrow(() -> new IllegalArgumentException("Conversation not found"));
         
@@ -174,26 +248,216 @@ public class MessagingService {
             throw new IllegalArgumentException("User is not part of this conversation");
         }
         
-        List<Message> messages = messageRepository.findByConversationIdOrderBySentAtDesc(
-            conversationId, PageRequest.of(page, size));
+        int pageSize = size == null ? DEFAULT_MESSAGE_PAGE_SIZE : Math.clamp(size, 1, MAX_MESSAGE_PAGE_SIZE);
+        MessageCursor position = after != null
+            ? MessageCursor.decode(after)
+            : before != null ? MessageCursor.decode(before) : MessageCursor.LATEST;
+        // One extra row tells us whether another page exists without a count query.
+        List<Message> rows = after != null
+            ? messageRepository.findAfter(conversationId, position.getSentAt(), position.getMessageId(), pageSize + 1)
+            : messageRepository.findBefore(conversationId, position.getSentAt(), position.getMessageId(), pageSize + 1);
+        boolean hasMore = rows.size() > pageSize;
         
-        return messages.stream()
-            .map(this::mapMessageToDTO)
-            .collect(Collectors.toList());
+        List<MessageDTO> items = new ArrayList<>(rows.subList(0, Math.min(rows.size(), pageSize))
+            .stream()
+            .map(message -> mapMessageToDTO(message, conversation))
+            .toList());
+        if (after != null) {
+            Collections.reverse(items);
+        }
+        
+        String nextCursor = null;
+        if (!items.isEmpty() && (after != null || hasMore)) {
+            nextCursor = MessageCursor.of(items.getLast()).encode();
+        }
+        String prevCursor;
+        if (!items.isEmpty()) {
+            prevCursor = MessageCursor.of(items.getFirst()).encode();
+        } else {
+            prevCursor = after != null ? after : before != null ? before : MessageCursor.EARLIEST.encode();
+        }
+        return MessagePage.builder()
+            .items(items)
+            .nextCursor(nextCursor)
+            .prevCursor(prevCursor)
+            .build();
+    }
+    
+    // Sent strictly after the conversation's latest message, under its row lock; see lockForMessage.
+    private Message saveMessage(Conversation conversation, User sender, String content) {
+        LocalDateTime latest = conversationRepository.lockForMessage(conversation.getId());
+        LocalDateTime sentAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        if (latest != null && !sentAt.isAfter(latest)) {
+            sentAt = latest.plus(1, ChronoUnit.MICROS);
+        }
+        Message message = messageRepository.save(Message.builder()
+            .conversation(conversation)
+            .sender(sender)
+            .content(content)
+            .sentAt(sentAt)
+            .build());
+        conversationRepository.recordMessage(conversation.getId(), sender.getId(), message.getId(),
+            preview(content), sentAt);
+        return message;
     }
     
     @Transactional
     public void markMessagesAsRead(UUID conversationId, UUID userId) {
-        messageRepository.markMessagesAsRead(conversationId, userId);
+        Conversation conversation = conversationRepository.findById(conversationId)
+            .orElseThrow(() -> new IllegalArgumentException("Conversation not found"));
+        
+        if (!conversation.getInitiator().getId().equals(userId) && 
+            !conversation.getRecipient().getId().equals(userId)) {
+            throw new IllegalArgumentException("User is not part of this conversation");
+        }
+        
+        int cleared = conversationRepository.lockUnreadCount(conversationId, userId);
+        conversationRepository.markRead(conversationId, userId);
+        
+        UUID senderId = conversation.getInitiator().getId().equals(userId)
+            ? conversation.getRecipient().getId()
+            : conversation.getInitiator().getId();
+        ReadWatermark watermark = conversationRepository.findReadWatermark(conversationId, userId);
+        eventPublisher.publishEvent(new MessagesReadEvent(ReadReceipt.builder()
+            .conversationId(conversationId)
+            .readerId(userId)
+            .readUpTo(watermark.getReadAt())
+            .readUpToMessageId(watermark.getMessageId())
+            .build(), senderId, cleared));
     }
     
-    private ConversationDTO mapToDTO(Conversation conversation, UUID currentUserId) {
-        User otherUser = conversation.getInitiator().getId().equals(currentUserId) 
-            ? conversation.getRecipient() 
-            : conversation.getInitiator();
+    /**
+     * Changes since the client's last token, read from the user's change log. With a
+     * timeout, waits up to that long for a change when there is none yet.
+     */
+    public MessagingSync sync(UUID userId, Long since, Long timeoutMs) {
+        if (since == null || since < 0 || since + 1 < messagingChangeLog.firstRetainedSeq(userId)) {
+            return MessagingSync.builder()
+                .token(messagingChangeLog.currentSeq(userId))
+                .resync(true)
+                .conversations(List.of())
+                .messages(List.of())
+                .reads(List.of())
+                .build();
+        }
+        
+        long wait = timeoutMs == null ? 0 : Math.clamp(timeoutMs, 0, MAX_SYNC_WAIT_MS);
+        CompletableFuture<Void> signal = wait > 0 ? messagingChangeLog.signalFor(userId) : null;
+        // One extra change tells us whether more are waiting.
+        List<MessagingChange> changes = messagingChangeLog.read(userId, since, SYNC_BATCH_SIZE + 1);
+        if (changes.isEmpty() && signal != null) {
+            messagingChangeLog.await(signal, wait);
+            changes = messagingChangeLog.read(userId, since, SYNC_BATCH_SIZE + 1);
+        }
+        boolean hasMore = changes.size() > SYNC_BATCH_SIZE;
+        changes = changes.subList(0, Math.min(changes.size(), SYNC_BATCH_SIZE));
+        
+        Set<UUID> conversationIds = new LinkedHashSet<>();
+        Set<UUID> messageIds = new LinkedHashSet<>();
+        changes.forEach(change -> {
+            conversationIds.add(change.getConversationId());
+            if (change.getMessageId() != null) {
+                messageIds.add(change.getMessageId());
+            }
+        });
+        Map<UUID, Conversation> conversations = conversationIds.isEmpty()
+            ? Map.of()
+            : conversationRepository.findWithParticipantsByIdIn(conversationIds)
+                .stream()
+                .collect(Collectors.toMap(Conversation::getId, Function.identity()));
+        List<MessageDTO> messages = messageIds.isEmpty()
+            ? List.of()
+            : messageRepository.findWithSenderByIdIn(messageIds)
+                .stream()
+                .filter(message -> conversations.containsKey(message.getConversation().getId()))
+                .map(message -> mapMessageToDTO(message, conversations.get(message.getConversation().getId())))
+                .toList();
+        List<ReadReceipt> reads = changes.stream()
+            .filter(change -> change.getKind() == MessagingChange.Kind.READ)
+            .filter(change -> conversations.containsKey(change.getConversationId()))
+            .map(change -> ReadReceipt.builder()
+                .conversationId(change.getConversationId())
+                .readerId(change.getActorId())
+                .readUpTo(conversations.get(change.getConversationId()).lastReadAtOf(change.getActorId()))
+                .readUpToMessageId(conversations.get(change.getConversationId()).lastReadIdOf(change.getActorId()))
+                .build())
+            .distinct()
+            .toList();
+        
+        return MessagingSync.builder()
+            .token(changes.isEmpty() ? since : changes.getLast().getSeq())
+            .hasMore(hasMore)
+            .conversations(conversationIds.stream()
+                .map(conversations::get)
+                .filter(Objects::nonNull)
+                .map(c -> mapToDTO(c, userId))
+                .toList())
+            .messages(messages)
+            .reads(reads)
+            .build();
+    }
+    
+    /**
+     * The caller's messages containing every word of the query, newest first. Only the
+     * caller's own postings are read, so only their conversations can match.
+     */
+    public MessageSearchPage searchMessages(UUID userId, String query, String cursor, Integer limit) {
+        Set<String> terms = MessageSearchIndex.queryTerms(query);
+        if (terms.isEmpty()) {
+            throw new IllegalArgumentException("Search query must contain a word of at least two characters");
+        }
+        MessageCursor before = cursor != null ? MessageCursor.decode(cursor) : MessageCursor.LATEST;
+        int pageSize = limit == null ? DEFAULT_SEARCH_PAGE_SIZE : Math.clamp(limit, 1, MAX_SEARCH_PAGE_SIZE);
+        // One extra ID tells us whether another page exists without a count query.
+        List<UUID> ids = messageSearchIndex.search(userId, terms, before, pageSize + 1);
+        boolean hasMore = ids.size() > pageSize;
+        List<UUID> pageIds = ids.subList(0, Math.min(ids.size(), pageSize));
+        if (pageIds.isEmpty()) {
+            return MessageSearchPage.builder().items(List.of()).build();
+        }
         
-        Message lastMessage = messageRepository.findLastMessageByConversationId(conversation.getId());
-        int unreadCount = messageRepository.countUnreadMessages(conversation.getId(), currentUserId);
+        Map<UUID, Message> messages = messageRepository.findWithSenderByIdIn(pageIds)
+            .stream()
+            .collect(Collectors.toMap(Message::getId, Function.identity()));
+        Map<UUID, Conversation> conversations = conversationRepository.findWithParticipantsByIdIn(
+                messages.values().stream().map(message -> message.getConversation().getId()).collect(Collectors.toSet()))
+            .stream()
+            .filter(conversation -> conversation.getInitiator().getId().equals(userId)
+                || conversation.getRecipient().getId().equals(userId))
+            .collect(Collectors.toMap(Conversation::getId, Function.identity()));
+        List<MessageSearchHit> hits = pageIds.stream()
+            .map(messages::get)
+            .filter(Objects::nonNull)
+            .filter(message -> conversations.containsKey(message.getConversation().getId()))
+            .map(message -> {
+                MessageSearchIndex.Snippet snippet = MessageSearchIndex.snippet(message.getContent(), terms);
+                return MessageSearchHit.builder()
+                    .message(mapMessageToDTO(message, conversations.get(message.getConversation().getId())))
+                    .snippet(snippet.text())
+                    .highlights(snippet.highlights())
+                    .build();
+            })
+            .toList();
+        
+        String nextCursor = null;
+        if (hasMore && !hits.isEmpty()) {
+            nextCursor = MessageCursor.of(hits.getLast().getMessage()).encode();
+        }
+        return MessageSearchPage.builder()
+            .items(hits)
+            .nextCursor(nextCursor)
+            .build();
+    }
+    
+    public UnreadCounts getUnreadCounts(UUID userId) {
+        return unreadCountCache.get(userId);
+    }
+    
+    private ConversationDTO mapToDTO(Conversation conversation, UUID currentUserId) {
+        boolean initiator = conversation.getInitiator().getId().equals(currentUserId);
+        int unreadCount = initiator
+            ? conversation.getInitiatorUnreadCount()
+            : conversation.getRecipientUnreadCount();
         
         return ConversationDTO.builder()
             .id(conversation.getId())
@@ -203,19 +467,53 @@ public class MessagingService {
             .introductoryMessage(conversation.getIntroductoryMessage())
             .createdAt(conversation.getCreatedAt())
             .lastMessageAt(conversation.getLastMessageAt())
-            .lastMessage(lastMessage != null ? lastMessage.getContent() : null)
+            .lastMessage(conversation.getLastMessagePreview())
+            .lastMessageSenderId(conversation.getLastMessageSenderId())
             .unreadMessageCount(unreadCount)
+            .lastReadAt(initiator ? conversation.getInitiatorLastReadAt() : conversation.getRecipientLastReadAt())
+            .otherLastReadAt(initiator ? conversation.getRecipientLastReadAt() : conversation.getInitiatorLastReadAt())
             .build();
     }
     
-    private MessageDTO mapMessageToDTO(Message message) {
+    private void publishStatus(Conversation conversation) {
+        eventPublisher.publishEvent(new ConversationStatusEvent(ConversationStatusChange.builder()
+            .conversationId(conversation.getId())
+            .initiatorId(conversation.getInitiator().getId())
+            .recipientId(conversation.getRecipient().getId())
+            .status(conversation.getStatus())
+            .build()));
+    }
+    
+    private static String preview(String content) {
+        return content.length() <= Conversation.PREVIEW_LENGTH
+            ? content
+            : content.substring(0, Conversation.PREVIEW_LENGTH);
+    }
+    
+    private MessageDTO mapMessageToDTO(Message message, Conversation conversation) {
+        UUID senderId = message.getSender().getId();
+        UUID readerId = conversation.getInitiator().getId().equals(senderId)
+            ? conversation.getRecipient().getId()
+            : conversation.getInitiator().getId();
         return MessageDTO.builder()
             .id(message.getId())
-            .conversationId(message.getConversation().getId())
+            .conversationId(conversation.getId())
             .sender(userMapper.toDTO(message.getSender()))
             .content(message.getContent())
             .sentAt(message.getSentAt())
-            .isRead(message.isRead())
+            .isRead(isReadBy(message, conversation.lastReadAtOf(readerId), conversation.lastReadIdOf(readerId)))
             .build();
     }
+    
+    // A message is read once the other participant's (sent_at, id) watermark has reached it.
+    private static boolean isReadBy(Message message, LocalDateTime readAt, UUID readId) {
+        if (readAt == null || message.getSentAt().isAfter(readAt)) {
+            return false;
+        }
+        if (message.getSentAt().isBefore(readAt) || readId == null) {
+            return true;
+        }
+        // Compared as Postgres orders UUIDs: by unsigned bytes, which the hex digits preserve.
+        return message.getId().toString().compareTo(readId.toString()) <= 0;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,106 @@
+package com.shelfswap.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.shelfswap.dtos.BookAddRequest;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.util.UriBuilder;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Looks books up in the Open Library search API and returns them in the same shape the
+ * client's search modal posts to /api/books/shelf. Concurrent requests are capped so an
+ * import cannot flood the API.
+ */
+@Component
+@Slf4j
+public class OpenLibraryClient {
+    private static final String FIELDS = "key,title,author_name,cover_i,isbn";
+
+    @Value("${shelfswap.openlibrary.base-url}")
+    private String baseUrl;
+
+    @Value("${shelfswap.openlibrary.max-concurrent-requests}")
+    private int maxConcurrentRequests;
+
+    private RestClient restClient;
+    private Semaphore permits;
+
+    @PostConstruct
+    void init() {
+        restClient = RestClient.builder().baseUrl(baseUrl).build();
+        permits = new Semaphore(maxConcurrentRequests);
+    }
+
+    // One search request for the whole batch; ISBNs without a match are absent from the result.
+    public Map<String, BookAddRequest> findByIsbns(Collection<String> isbns) {
+        Set<String> wanted = Set.copyOf(isbns);
+        JsonNode response = search(uri -> uri
+                .queryParam("q", "isbn:(" + String.join(" OR ", wanted) + ")")
+                .queryParam("limit", wanted.size()));
+
+        Map<String, BookAddRequest> result = new HashMap<>();
+        for (JsonNode doc : response.path("docs")) {
+            BookAddRequest book = toRequest(doc);
+            if (book == null) {
+                continue;
+            }
+            for (JsonNode isbn : doc.path("isbn")) {
+                if (wanted.contains(isbn.asText())) {
+                    result.putIfAbsent(isbn.asText(), book);
+                }
+            }
+        }
+        return result;
+    }
+
+    public Optional<BookAddRequest> findByTitleAndAuthor(String title, String author) {
+        JsonNode response = search(uri -> {
+            uri.queryParam("title", title).queryParam("limit", 1);
+            return author == null || author.isBlank() ? uri : uri.queryParam("author", author);
+        });
+        for (JsonNode doc : response.path("docs")) {
+            return Optional.ofNullable(toRequest(doc));
+        }
+        return Optional.empty();
+    }
+
+    private JsonNode search(Function<UriBuilder, UriBuilder> query) {
+        permits.acquireUninterruptibly();
+        try {
+            JsonNode body = restClient.get()
+                    .uri(uri -> query.apply(uri.path("/search.json").queryParam("fields", FIELDS)).build())
+                    .retrieve()
+                    .body(JsonNode.class);
+            return body == null ? MissingNode.getInstance() : body;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static BookAddRequest toRequest(JsonNode doc) {
+        String id = BookAddRequest.extractOLKey(doc.path("key").asText(null));
+        String title = doc.path("title").asText(null);
+        String author = doc.path("author_name").path(0).asText(null);
+        if (id == null || title == null || author == null) {
+            return null;
+        }
+        return BookAddRequest.builder()
+                .id(id)
+                .title(title)
+                .author(author)
+                .coverId(doc.hasNonNull("cover_i") ? doc.get("cover_i").asInt() : null)
+                .build();
+    }
+}
@@ -0,0 +1,138 @@
+package com.shelfswap.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-process pub/sub of server-sent events keyed by user. Publishing only offers to a
+ * bounded per-connection queue, so the publisher never waits on a client; each
+ * connection is drained by its own virtual thread. A connection that falls a full
+ * buffer behind loses its backlog and is sent a "resync" event instead.
+ */
+@Slf4j
+class SseBroker<T> {
+    @FunctionalInterface
+    interface Sender<T> {
+        void send(UUID userId, SseEmitter emitter, T event) throws IOException;
+    }
+
+    private final String name;
+    private final int bufferSize;
+    private final long heartbeatMs;
+    private final long timeoutMs;
+    private final Sender<T> sender;
+    private final Map<UUID, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    SseBroker(String name, int bufferSize, long heartbeatMs, long timeoutMs, Sender<T> sender) {
+        this.name = name;
+        this.bufferSize = bufferSize;
+        this.heartbeatMs = heartbeatMs;
+        this.timeoutMs = timeoutMs;
+        this.sender = sender;
+    }
+
+    SseEmitter subscribe(UUID userId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(userId, emitter);
+        subscribers.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(ex -> subscriber.close());
+        subscriber.start();
+        return emitter;
+    }
+
+    void publish(UUID userId, T event) {
+        Set<Subscriber> targets = subscribers.get(userId);
+        if (targets != null) {
+            targets.forEach(subscriber -> subscriber.offer(event));
+        }
+    }
+
+    boolean hasSubscribers(UUID userId) {
+        return subscribers.containsKey(userId);
+    }
+
+    int getSubscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    void close() {
+        subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    private class Subscriber {
+        private final UUID userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<T> queue = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean overflowed = new AtomicBoolean();
+        private volatile boolean closed = false;
+        private Thread drainer;
+
+        Subscriber(UUID userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        void start() {
+            drainer = Thread.ofVirtual().name(name + "-" + userId).unstarted(this::drain);
+            drainer.start();
+        }
+
+        void offer(T event) {
+            if (!queue.offer(event)) {
+                overflowed.set(true);
+                queue.clear();
+            }
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            subscribers.computeIfPresent(userId, (id, set) -> {
+                set.remove(this);
+                return set.isEmpty() ? null : set;
+            });
+            if (drainer != null && drainer != Thread.currentThread()) {
+                drainer.interrupt();
+            }
+        }
+
+        private void drain() {
+            try {
+                while (!closed) {
+                    T event = queue.poll(heartbeatMs, TimeUnit.MILLISECONDS);
+                    if (overflowed.getAndSet(false)) {
+                        queue.clear();
+                        emitter.send(SseEmitter.event().name("resync").data("resync"));
+                    } else if (event == null) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else {
+                        sender.send(userId, emitter, event);
+                    }
+                }
+            } catch (IOException | IllegalStateException ex) {
+                // The client went away; the container completes the emitter.
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException ex) {
+                log.warn("Stream {} for user {} failed", name, userId, ex);
+                emitter.completeWithError(ex);
+            } finally {
+                close();
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.shelfswap.services;
+
+import com.shelfswap.events.ShelfBatchEvent;
+import com.shelfswap.events.ShelfChangeEvent;
+import com.shelfswap.repositories.UserMatchRepository;
+import com.shelfswap.repositories.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains the user_matches read model. Deltas are applied synchronously so they
+ * commit or roll back together with the shelf / wishlist write that caused them.
+ * Deltas for the same book are serialised with a transaction-scoped advisory lock:
+ * without it, a shelf add and a wishlist add of one book in two concurrent
+ * transactions each miss the other's uncommitted row, and the pair is never counted.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserMatchService {
+    private static final int REPAIR_BATCH_SIZE = 500;
+    // Takes the locks in book ID order, so transactions locking several books cannot deadlock.
+    private static final String LOCK_BOOKS = """
+        SELECT pg_advisory_xact_lock(hashtextextended('user_matches:' || b.book_id, 0))
+        FROM (SELECT DISTINCT book_id FROM unnest(?::text[]) AS book_id ORDER BY book_id) b
+    """;
+
+    private final UserMatchRepository userMatchRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+
+    @EventListener
+    public void onShelfChange(ShelfChangeEvent event) {
+        /*
+         * The list row is already written, so whichever transaction takes the lock second
+         * runs its delta queries in a fresh read-committed snapshot that includes the
+         * first one's row, and counts the pair exactly once.
+         */
+        List<String> bookIds = List.of(event.getBookId());
+        lockBooks(bookIds);
+        if (event.isAdded()) {
+            addMatches(event.getUserId(), event.isShelf() ? bookIds : List.of(), event.isShelf() ? List.of() : bookIds);
+            return;
+        }
+        if (event.isShelf()) {
+            userMatchRepository.removeShelfMatchesForWishers(event.getUserId(), event.getBookId());
+            userMatchRepository.removeShelfMatchesForOwner(event.getUserId(), event.getBookId());
+        } else {
+            userMatchRepository.removeWishlistMatchesForWisher(event.getUserId(), event.getBookId());
+            userMatchRepository.removeWishlistMatchesForOwners(event.getUserId(), event.getBookId());
+        }
+        userMatchRepository.deleteEmptyMatches(event.getUserId());
+    }
+
+    // The whole batch takes its locks and applies its deltas in one statement per direction.
+    @EventListener
+    public void onShelfBatch(ShelfBatchEvent event) {
+        List<String> bookIds = new ArrayList<>(event.getShelfBookIds());
+        bookIds.addAll(event.getWishlistBookIds());
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        lockBooks(bookIds);
+        addMatches(event.getUserId(), event.getShelfBookIds(), event.getWishlistBookIds());
+    }
+
+    @Scheduled(
+            initialDelayString = "${shelfswap.matches.repair-initial-delay-ms}",
+            fixedDelayString = "${shelfswap.matches.repair-interval-ms}"
+    )
+    public void repair() {
+        long start = System.currentTimeMillis();
+        int checked = 0;
+        int repaired = 0;
+        UUID after = new UUID(0L, 0L);
+        List<UUID> batch;
+        do {
+            batch = userRepository.findIdsAfter(after, Limit.of(REPAIR_BATCH_SIZE));
+            for (UUID userId : batch) {
+                if (repairUser(userId)) {
+                    repaired++;
+                }
+                checked++;
+            }
+            if (!batch.isEmpty()) {
+                after = batch.getLast();
+            }
+        } while (batch.size() == REPAIR_BATCH_SIZE);
+        log.info("Checked user_matches for {} users, repaired {} in {} ms",
+                checked, repaired, System.currentTimeMillis() - start);
+    }
+
+    // Compares every pair's counts, not just who the partners are, so drifted counts are repaired too.
+    public boolean repairUser(UUID userId) {
+        Boolean repaired = transactionTemplate.execute(status -> {
+            Set<MatchCounts> expected = userMatchRepository.recountForUser(userId)
+                    .stream()
+                    .map(row -> new MatchCounts(row.getPartnerId(), row.getTheyOwnCount(), row.getIOwnCount()))
+                    .collect(Collectors.toSet());
+            Set<MatchCounts> actual = userMatchRepository.findByUserId(userId)
+                    .stream()
+                    .filter(match -> match.getTheyOwnCount() != 0 || match.getIOwnCount() != 0)
+                    .map(match -> new MatchCounts(match.getPartnerId(), match.getTheyOwnCount(), match.getIOwnCount()))
+                    .collect(Collectors.toSet());
+            if (expected.equals(actual)) {
+                return false;
+            }
+            userMatchRepository.deleteAllForUser(userId);
+            userMatchRepository.rebuildForUser(userId);
+            return true;
+        });
+        if (Boolean.TRUE.equals(repaired)) {
+            log.warn("Repaired drifted user_matches rows for user {}", userId);
+            return true;
+        }
+        return false;
+    }
+
+    private void lockBooks(List<String> bookIds) {
+        jdbcTemplate.queryForList(LOCK_BOOKS, (Object) bookIds.toArray(String[]::new));
+    }
+
+    private void addMatches(UUID userId, List<String> shelfBookIds, List<String> wishlistBookIds) {
+        if (!shelfBookIds.isEmpty()) {
+            userMatchRepository.addShelfMatchesForWishers(userId, shelfBookIds);
+            userMatchRepository.addShelfMatchesForOwner(userId, shelfBookIds);
+        }
+        if (!wishlistBookIds.isEmpty()) {
+            userMatchRepository.addWishlistMatchesForWisher(userId, wishlistBookIds);
+            userMatchRepository.addWishlistMatchesForOwners(userId, wishlistBookIds);
+        }
+    }
+
+    private record MatchCounts(UUID partnerId, long theyOwnCount, long iOwnCount) {
+    }
+}
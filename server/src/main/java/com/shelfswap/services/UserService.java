@@ -3,6 +3,7 @@ package com.shelfswap.services;
 import com.shelfswap.dtos.UserDTO;
 import com.shelfswap.entities.User;
 import com.shelfswap.exceptions.UserNotFoundException;
+import com.shelfswap.index.SwapMatchIndex;
 import com.shelfswap.mappers.UserMapper;
 import com.shelfswap.repositories.UserRepository;
 import lombok.RequiredArgsConstructor;
@@ -16,6 +17,7 @@ import java.util.UUID;
 public class UserService {
     private final UserRepository userRepository;
     private final UserMapper userMapper;
+    private final SwapMatchIndex swapMatchIndex;
 
     public User getUserById(UUID id) throws BadCredentialsException {
         return userRepository.findById(id).orElseThrow(() -> new UserNotFoundException("No account associated with this ID"));
@@ -31,8 +33,9 @@ public class UserService {
     }
     
     public boolean hasMutualBooks(UUID user1Id, UUID user2Id) {
-        return userRepository.findMutualUsers(user1Id, null)
-                .stream()
-                .anyMatch(userDTO -> userDTO.getId().equals(user2Id));
+        if (swapMatchIndex.isReady()) {
+            return swapMatchIndex.hasMutualBooks(user1Id, user2Id);
+        }
+        return userRepository.existsMutualBooks(user1Id, user2Id);
     }
 }
@@ -0,0 +1,125 @@
+-- Runs after Hibernate has updated the schema (spring.jpa.defer-datasource-initialization).
+-- Statements are separated by ^; so that function bodies can contain semicolons.
+
+-- A book may be on a user's shelf or wishlist but not both. The advisory lock serialises
+-- concurrent inserts of the same user and book, so the second one sees the first.
+CREATE OR REPLACE FUNCTION enforce_shelf_wishlist_exclusive() RETURNS trigger AS $$
+DECLARE
+    conflicting boolean;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtextextended(NEW.user_id::text || ':' || NEW.book_id, 0));
+    IF TG_TABLE_NAME = 'shelf_books' THEN
+        SELECT EXISTS (SELECT 1 FROM wishlist_books WHERE user_id = NEW.user_id AND book_id = NEW.book_id)
+        INTO conflicting;
+    ELSE
+        SELECT EXISTS (SELECT 1 FROM shelf_books WHERE user_id = NEW.user_id AND book_id = NEW.book_id)
+        INTO conflicting;
+    END IF;
+    IF conflicting THEN
+        RAISE EXCEPTION 'new row for relation "%" violates check constraint "shelf_wishlist_exclusive"', TG_TABLE_NAME
+            USING ERRCODE = 'check_violation', CONSTRAINT = 'shelf_wishlist_exclusive';
+    END IF;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql^;
+
+CREATE OR REPLACE TRIGGER shelf_books_exclusive
+    BEFORE INSERT OR UPDATE OF user_id, book_id ON shelf_books
+    FOR EACH ROW EXECUTE FUNCTION enforce_shelf_wishlist_exclusive()^;
+
+CREATE OR REPLACE TRIGGER wishlist_books_exclusive
+    BEFORE INSERT OR UPDATE OF user_id, book_id ON wishlist_books
+    FOR EACH ROW EXECUTE FUNCTION enforce_shelf_wishlist_exclusive()^;
+
+-- Clears the rows that predate the constraints below: repeated adds of one book keep a
+-- single row, and a book on both lists stays on the shelf. Once the constraints exist
+-- these touch nothing; the match repair job recounts the affected users.
+DELETE FROM shelf_books a
+USING shelf_books b
+WHERE a.user_id = b.user_id AND a.book_id = b.book_id AND a.ctid > b.ctid^;
+
+DELETE FROM wishlist_books a
+USING wishlist_books b
+WHERE a.user_id = b.user_id AND a.book_id = b.book_id AND a.ctid > b.ctid^;
+
+DELETE FROM wishlist_books w
+USING shelf_books s
+WHERE s.user_id = w.user_id AND s.book_id = w.book_id^;
+
+-- The ON CONFLICT (user_id, book_id) adds need these, so they are installed here after
+-- the cleanup rather than left to Hibernate, which only logs a constraint it cannot add.
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'uk_shelf_books_user_book') THEN
+        ALTER TABLE shelf_books ADD CONSTRAINT uk_shelf_books_user_book UNIQUE (user_id, book_id);
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'uk_wishlist_books_user_book') THEN
+        ALTER TABLE wishlist_books ADD CONSTRAINT uk_wishlist_books_user_book UNIQUE (user_id, book_id);
+    END IF;
+END;
+$$^;
+
+-- Fills in the conversation summaries of conversations that predate them; once every
+-- conversation with messages has a last sender this touches nothing.
+UPDATE conversations c
+SET last_message_preview = LEFT(m.content, 200),
+    last_message_sender_id = m.sender_id,
+    last_message_at = m.sent_at,
+    initiator_unread_count = (
+        SELECT COUNT(*) FROM messages u
+        WHERE u.conversation_id = c.id AND u.sender_id <> c.initiator_id AND NOT u.is_read
+    ),
+    recipient_unread_count = (
+        SELECT COUNT(*) FROM messages u
+        WHERE u.conversation_id = c.id AND u.sender_id <> c.recipient_id AND NOT u.is_read
+    )
+FROM (
+    SELECT DISTINCT ON (conversation_id) conversation_id, content, sender_id, sent_at
+    FROM messages
+    WHERE conversation_id IN (SELECT id FROM conversations WHERE last_message_sender_id IS NULL)
+    ORDER BY conversation_id, sent_at DESC
+) m
+WHERE m.conversation_id = c.id
+AND c.last_message_sender_id IS NULL^;
+
+-- Fills in the latest message ID, which read watermarks pair with its time; conversations
+-- without messages keep a null one, and once every other has it this touches nothing.
+UPDATE conversations c
+SET last_message_id = m.id
+FROM (
+    SELECT DISTINCT ON (conversation_id) conversation_id, id
+    FROM messages
+    WHERE conversation_id IN (SELECT id FROM conversations WHERE last_message_id IS NULL)
+    ORDER BY conversation_id, sent_at DESC, id DESC
+) m
+WHERE m.conversation_id = c.id
+AND c.last_message_id IS NULL^;
+
+-- Derives the read watermarks of conversations that predate them from the old per-message
+-- flags; new conversations get theirs on insert, so this touches nothing once done.
+UPDATE conversations c
+SET initiator_last_read_at = COALESCE((
+        SELECT MAX(m.sent_at) FROM messages m
+        WHERE m.conversation_id = c.id AND m.sender_id <> c.initiator_id AND m.is_read
+    ), c.created_at),
+    recipient_last_read_at = COALESCE((
+        SELECT MAX(m.sent_at) FROM messages m
+        WHERE m.conversation_id = c.id AND m.sender_id <> c.recipient_id AND m.is_read
+    ), c.created_at)
+WHERE c.initiator_last_read_at IS NULL
+OR c.recipient_last_read_at IS NULL^;
+
+-- The overlap OverlapSignal scores, kept per pair so the feed query reads it instead of
+-- computing it; 0 unless the pair is mutual.
+-- Not mapped on UserMatch, or Hibernate would add it as a plain column before this runs.
+ALTER TABLE user_matches ADD COLUMN IF NOT EXISTS overlap_score double precision
+    GENERATED ALWAYS AS (
+        CASE WHEN they_own_count > 0 AND i_own_count > 0
+            THEN 2.0 * they_own_count * i_own_count / (they_own_count + i_own_count)
+            ELSE 0
+        END
+    ) STORED^;
+
+CREATE INDEX IF NOT EXISTS idx_user_matches_overlap
+    ON user_matches (user_id, overlap_score DESC, partner_id)
+    WHERE overlap_score > 0^;
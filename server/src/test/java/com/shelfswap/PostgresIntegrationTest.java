@@ -0,0 +1,83 @@
+package com.shelfswap;
+
+import com.shelfswap.dtos.BookAddRequest;
+import com.shelfswap.entities.User;
+import com.shelfswap.repositories.UserRepository;
+import com.shelfswap.services.BookService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Boots the whole application against a throwaway Postgres, started once per test JVM
+ * and shared by every test class, so schema.sql, the triggers and the native queries
+ * run exactly as they do in production. Tests never clean up; every user and book they
+ * create is fresh, so they cannot see each other's rows.
+ */
+@SpringBootTest(properties = {
+        "jwt.secret=c2hlbGZzd2FwLXRlc3Qtc2lnbmluZy1rZXktMzItYnl0ZXMtbG9uZw==",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+public abstract class PostgresIntegrationTest {
+    private static final EmbeddedPostgres POSTGRES = start();
+
+    @Autowired
+    protected UserRepository userRepository;
+
+    @Autowired
+    protected BookService bookService;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> POSTGRES.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+    }
+
+    protected UUID newUser() {
+        return userRepository.save(User.builder()
+                .email(UUID.randomUUID() + "@example.com")
+                .password("not-a-real-hash")
+                .firstName("Test")
+                .build()).getId();
+    }
+
+    // A work ID no other test uses.
+    protected static String newBookId() {
+        return "OL" + ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE) + "W";
+    }
+
+    protected void shelve(UUID userId, String bookId) {
+        bookService.addToShelfOrWishlist(bookRequest(bookId), userId, true);
+    }
+
+    protected void wish(UUID userId, String bookId) {
+        bookService.addToShelfOrWishlist(bookRequest(bookId), userId, false);
+    }
+
+    protected static BookAddRequest bookRequest(String bookId) {
+        return BookAddRequest.builder()
+                .id(bookId)
+                .title("Book " + bookId)
+                .author("Author " + bookId)
+                .coverId(1)
+                .build();
+    }
+
+    private static EmbeddedPostgres start() {
+        try {
+            return EmbeddedPostgres.start();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not start embedded Postgres", ex);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.shelfswap.cache;
+
+import com.shelfswap.entities.Book;
+import com.shelfswap.repositories.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BookCatalogCacheTest {
+    private final BookRepository bookRepository = mock(BookRepository.class);
+    private final BookCatalogCache cache = new BookCatalogCache(bookRepository);
+    private final Book book = Book.builder().id("OL1W").title("It").author("Stephen King").build();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "negativeTtlMs", 60_000L);
+        ReflectionTestUtils.setField(cache, "expectedBooks", 1000L);
+        ReflectionTestUtils.setField(cache, "falsePositiveRate", 0.01);
+        when(bookRepository.streamAllIds()).thenReturn(Stream.empty());
+        cache.loadKnownIds();
+    }
+
+    @Test
+    void bookStoredElsewhereIsFoundDespiteTheFilter() {
+        when(bookRepository.findById("OL1W")).thenReturn(Optional.of(book));
+
+        assertThat(cache.find("OL1W")).isEmpty();
+        verify(bookRepository, never()).findById("OL1W");
+
+        assertThat(cache.findStored("OL1W")).contains(book);
+        assertThat(cache.find("OL1W")).contains(book);
+    }
+
+    @Test
+    void cachedAbsenceIsConfirmedBeforeReportingMissing() {
+        when(bookRepository.findById("OL1W")).thenReturn(Optional.empty());
+        assertThat(cache.exists("OL1W")).isFalse();
+
+        when(bookRepository.findById("OL1W")).thenReturn(Optional.of(book));
+
+        assertThat(cache.exists("OL1W")).isTrue();
+    }
+}
@@ -0,0 +1,65 @@
+package com.shelfswap.cache;
+
+import com.shelfswap.dtos.FeedPage;
+import com.shelfswap.events.ShelfChangeEvent;
+import com.shelfswap.index.SwapMatchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FeedCacheTest {
+    private final SwapMatchIndex swapMatchIndex = mock(SwapMatchIndex.class);
+    private final FeedCache feedCache = new FeedCache(swapMatchIndex);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(feedCache, "maxUsers", 100);
+        ReflectionTestUtils.setField(feedCache, "ttlMs", 60_000L);
+        when(swapMatchIndex.isReady()).thenReturn(true);
+    }
+
+    @Test
+    void changeForAnotherUserDoesNotDiscardALoadInProgress() {
+        UUID me = UUID.randomUUID();
+        UUID someoneElse = UUID.randomUUID();
+        when(swapMatchIndex.findUsersWithBook("OL1W")).thenReturn(new HashSet<>(Set.of(someoneElse)));
+
+        feedCache.get(me, "first", () -> {
+            feedCache.onShelfChange(new ShelfChangeEvent(someoneElse, "OL1W", true, true));
+            return page();
+        });
+        feedCache.get(me, "first", this::page);
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void changeForTheLoadingUserDiscardsThePage() {
+        UUID me = UUID.randomUUID();
+        when(swapMatchIndex.findUsersWithBook("OL1W")).thenReturn(new HashSet<>());
+
+        feedCache.get(me, "first", () -> {
+            feedCache.onShelfChange(new ShelfChangeEvent(me, "OL1W", true, true));
+            return page();
+        });
+        feedCache.get(me, "first", this::page);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    private FeedPage page() {
+        loads.incrementAndGet();
+        return FeedPage.builder().items(List.of()).build();
+    }
+}
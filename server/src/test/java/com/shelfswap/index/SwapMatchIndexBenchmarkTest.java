@@ -0,0 +1,121 @@
+package com.shelfswap.index;
+
+import com.shelfswap.dtos.UserBookRef;
+import com.shelfswap.repositories.ShelfBookRepository;
+import com.shelfswap.repositories.WishlistRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Times the pairwise mutual-books check for an initiator whose lists stay the same size
+ * while their number of mutual partners grows a thousandfold. The check only walks the
+ * two users' lists, so its cost should stay flat; materialising every partner first, as
+ * the old check did, grows with the partner count and is timed alongside for contrast.
+ * Excluded from the normal build; run it with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class SwapMatchIndexBenchmarkTest {
+    private static final int LIST_SIZE = 20;
+    private static final int[] PARTNER_COUNTS = {100, 10_000, 100_000};
+    private static final int WARMUP_CALLS = 100_000;
+    private static final int ROUNDS = 31;
+    private static final int CALLS_PER_ROUND = 10_000;
+
+    // Keeps the timed calls from being optimised away.
+    private static volatile boolean sink;
+
+    @Test
+    void pairwiseCheckAsPartnersGrow() {
+        for (int partners : PARTNER_COUNTS) {
+            Fixture fixture = new Fixture(partners);
+            assertThat(fixture.index.hasMutualBooks(fixture.initiator, fixture.lastPartner)).isTrue();
+            assertThat(fixture.index.hasMutualBooks(fixture.initiator, fixture.stranger)).isFalse();
+
+            double pairwise = medianNanosPerCall(() -> fixture.index.hasMutualBooks(fixture.initiator, fixture.lastPartner));
+            double fullScan = medianNanosPerCall(10, () -> fixture.index.withReadLock(() -> {
+                int initiator = fixture.index.userIndex(fixture.initiator);
+                BitSet mutual = fixture.index.outNeighbours(initiator);
+                mutual.and(fixture.index.inNeighbours(initiator));
+                return mutual.get(fixture.index.userIndex(fixture.lastPartner));
+            }));
+            System.out.printf("%,8d partners: pairwise %,10.0f ns/op, materialise and scan %,14.0f ns/op%n",
+                    partners, pairwise, fullScan);
+        }
+    }
+
+    private static double medianNanosPerCall(BooleanCall call) {
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            call.run();
+        }
+        return medianNanosPerCall(CALLS_PER_ROUND, call);
+    }
+
+    private static double medianNanosPerCall(int callsPerRound, BooleanCall call) {
+        double[] rounds = new double[ROUNDS];
+        boolean result = false;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < callsPerRound; i++) {
+                result ^= call.run();
+            }
+            rounds[round] = (double) (System.nanoTime() - start) / callsPerRound;
+        }
+        sink = result;
+        Arrays.sort(rounds);
+        return rounds[ROUNDS / 2];
+    }
+
+    @FunctionalInterface
+    private interface BooleanCall {
+        boolean run();
+    }
+
+    /*
+     * The initiator wants LIST_SIZE books and owns LIST_SIZE others. Every partner owns
+     * one of the wanted books and wants one of the owned ones, so all are mutual while
+     * the initiator's own lists never grow.
+     */
+    private static class Fixture {
+        private final UUID initiator = UUID.randomUUID();
+        private final UUID stranger = UUID.randomUUID();
+        private final UUID lastPartner;
+        private final SwapMatchIndex index;
+
+        Fixture(int partners) {
+            LocalDateTime createdAt = LocalDateTime.now();
+            List<UserBookRef> shelf = new ArrayList<>();
+            List<UserBookRef> wishlist = new ArrayList<>();
+            for (int book = 0; book < LIST_SIZE; book++) {
+                wishlist.add(new UserBookRef(initiator, "OL" + book + "W", createdAt));
+                shelf.add(new UserBookRef(initiator, "OL" + (LIST_SIZE + book) + "W", createdAt));
+            }
+            UUID partner = null;
+            for (int i = 0; i < partners; i++) {
+                partner = UUID.randomUUID();
+                shelf.add(new UserBookRef(partner, "OL" + (i % LIST_SIZE) + "W", createdAt));
+                wishlist.add(new UserBookRef(partner, "OL" + (LIST_SIZE + i % LIST_SIZE) + "W", createdAt));
+            }
+            lastPartner = partner;
+            shelf.add(new UserBookRef(stranger, "OL" + (2 * LIST_SIZE) + "W", createdAt));
+
+            ShelfBookRepository shelfBookRepository = mock(ShelfBookRepository.class);
+            WishlistRepository wishlistRepository = mock(WishlistRepository.class);
+            when(shelfBookRepository.streamAllRefs()).thenReturn(shelf.stream());
+            when(wishlistRepository.streamAllRefs()).thenReturn(wishlist.stream());
+            index = new SwapMatchIndex(shelfBookRepository, wishlistRepository, mock(ApplicationEventPublisher.class));
+            index.rebuild();
+        }
+    }
+}
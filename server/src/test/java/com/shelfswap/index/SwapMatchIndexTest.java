@@ -0,0 +1,127 @@
+package com.shelfswap.index;
+
+import com.shelfswap.dtos.UserBookRef;
+import com.shelfswap.events.MatchChangeEvent;
+import com.shelfswap.events.ShelfBatchEvent;
+import com.shelfswap.events.ShelfChangeEvent;
+import com.shelfswap.repositories.ShelfBookRepository;
+import com.shelfswap.repositories.WishlistRepository;
+import org.assertj.core.groups.Tuple;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SwapMatchIndexTest {
+    private final List<UserBookRef> shelf = new ArrayList<>();
+    private final List<UserBookRef> wishlist = new ArrayList<>();
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+
+    @Test
+    void mutualBooksNeedABookEachWay() {
+        UUID me = UUID.randomUUID();
+        UUID partner = UUID.randomUUID();
+        UUID oneWay = UUID.randomUUID();
+        gives(partner, me, "OL1W");
+        gives(me, partner, "OL2W");
+        gives(oneWay, me, "OL3W");
+        // Others on the same books must not change the answer for the pair.
+        for (int i = 0; i < 50; i++) {
+            UUID other = UUID.randomUUID();
+            gives(other, me, "OL1W");
+            gives(me, other, "OL2W");
+        }
+        SwapMatchIndex index = build();
+
+        assertThat(index.hasMutualBooks(me, partner)).isTrue();
+        assertThat(index.hasMutualBooks(partner, me)).isTrue();
+        assertThat(index.hasMutualBooks(me, oneWay)).isFalse();
+        assertThat(index.hasMutualBooks(me, UUID.randomUUID())).isFalse();
+    }
+
+    @Test
+    void liveChangesPublishTheMatchesTheyJoinAndSplit() {
+        UUID me = UUID.randomUUID();
+        UUID partner = UUID.randomUUID();
+        gives(partner, me, "OL1W");
+        gives(me, partner, "OL2W");
+        SwapMatchIndex index = build();
+
+        index.onShelfChange(new ShelfChangeEvent(me, "OL2W", true, false));
+        assertThat(index.hasMutualBooks(me, partner)).isFalse();
+        index.onShelfChange(new ShelfChangeEvent(me, "OL2W", true, true));
+        assertThat(index.hasMutualBooks(me, partner)).isTrue();
+        // Another book between the pair leaves it matched, so nothing is published.
+        index.onShelfChange(new ShelfChangeEvent(partner, "OL1W", false, true));
+
+        assertThat(publishedMatchChanges())
+                .containsExactly(Tuple.tuple(me, partner, false), Tuple.tuple(me, partner, true));
+    }
+
+    @Test
+    void batchJoinsEveryPairItCompletes() {
+        UUID me = UUID.randomUUID();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        gives(first, me, "OL1W");
+        gives(second, me, "OL2W");
+        wishlist.add(new UserBookRef(first, "OL3W", LocalDateTime.now()));
+        wishlist.add(new UserBookRef(second, "OL4W", LocalDateTime.now()));
+        SwapMatchIndex index = build();
+
+        index.onShelfBatch(new ShelfBatchEvent(me, List.of("OL3W", "OL4W"), List.of()));
+
+        assertThat(index.hasMutualBooks(me, first)).isTrue();
+        assertThat(index.hasMutualBooks(me, second)).isTrue();
+        assertThat(publishedMatchChanges())
+                .containsExactlyInAnyOrder(Tuple.tuple(me, first, true), Tuple.tuple(me, second, true));
+    }
+
+    @Test
+    void unrelatedChangesPublishNothing() {
+        UUID me = UUID.randomUUID();
+        UUID partner = UUID.randomUUID();
+        gives(partner, me, "OL1W");
+        SwapMatchIndex index = build();
+
+        index.onShelfChange(new ShelfChangeEvent(me, "OL9W", true, true));
+
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    private void gives(UUID giver, UUID receiver, String bookId) {
+        shelf.add(new UserBookRef(giver, bookId, LocalDateTime.now()));
+        wishlist.add(new UserBookRef(receiver, bookId, LocalDateTime.now()));
+    }
+
+    private SwapMatchIndex build() {
+        ShelfBookRepository shelfBookRepository = mock(ShelfBookRepository.class);
+        WishlistRepository wishlistRepository = mock(WishlistRepository.class);
+        when(shelfBookRepository.streamAllRefs()).thenReturn(shelf.stream());
+        when(wishlistRepository.streamAllRefs()).thenReturn(wishlist.stream());
+        SwapMatchIndex index = new SwapMatchIndex(shelfBookRepository, wishlistRepository, eventPublisher);
+        index.rebuild();
+        return index;
+    }
+
+    private List<Tuple> publishedMatchChanges() {
+        ArgumentCaptor<MatchChangeEvent> events = ArgumentCaptor.forClass(MatchChangeEvent.class);
+        verify(eventPublisher, atLeast(0)).publishEvent(events.capture());
+        return events.getAllValues()
+                .stream()
+                .map(event -> Tuple.tuple(event.getUserId(), event.getPartnerId(), event.isMatched()))
+                .toList();
+    }
+}
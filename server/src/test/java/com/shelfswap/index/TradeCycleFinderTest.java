@@ -0,0 +1,110 @@
+package com.shelfswap.index;
+
+import com.shelfswap.dtos.UserBookRef;
+import com.shelfswap.repositories.ShelfBookRepository;
+import com.shelfswap.repositories.WishlistRepository;
+import org.assertj.core.groups.Tuple;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TradeCycleFinderTest {
+    private final List<UserBookRef> shelf = new ArrayList<>();
+    private final List<UserBookRef> wishlist = new ArrayList<>();
+    private TradeCycleFinder finder;
+
+    @AfterEach
+    void tearDown() {
+        if (finder != null) {
+            finder.stop();
+        }
+    }
+
+    @Test
+    void findsThreeAndFourWayLoopsWithTheirBooks() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        UUID c = UUID.randomUUID();
+        UUID d = UUID.randomUUID();
+        UUID e = UUID.randomUUID();
+        UUID f = UUID.randomUUID();
+        gives(b, a, "OL1W");
+        gives(c, b, "OL2W");
+        gives(a, c, "OL3W");
+        gives(d, a, "OL4W");
+        gives(e, d, "OL5W");
+        gives(f, e, "OL6W");
+        gives(a, f, "OL7W");
+        build(10);
+
+        List<TradeCycle> cycles = finder.findCycles(a);
+
+        assertThat(cycles).hasSize(2);
+        assertThat(cycles).anySatisfy(cycle -> assertThat(cycle.getLegs())
+                .extracting(TradeLeg::getGiverId, TradeLeg::getReceiverId, TradeLeg::getBookId)
+                .containsExactly(leg(b, a, "OL1W"), leg(c, b, "OL2W"), leg(a, c, "OL3W")));
+        assertThat(cycles).anySatisfy(cycle -> assertThat(cycle.getLegs())
+                .extracting(TradeLeg::getBookId)
+                .containsExactly("OL4W", "OL5W", "OL6W", "OL7W"));
+    }
+
+    @Test
+    void cachedResultsAreBoundedByUserCount() {
+        List<UUID> starts = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            UUID start = UUID.randomUUID();
+            UUID partner = UUID.randomUUID();
+            UUID third = UUID.randomUUID();
+            gives(partner, start, "OL" + i + "1W");
+            gives(third, partner, "OL" + i + "2W");
+            gives(start, third, "OL" + i + "3W");
+            starts.add(start);
+        }
+        build(2);
+
+        starts.forEach(start -> assertThat(finder.findCycles(start)).hasSize(1));
+
+        assertThat((Map<?, ?>) ReflectionTestUtils.getField(finder, "cyclesByUser")).hasSize(2);
+        // Members of evicted results are unlinked too, so the reverse index shrinks with it.
+        assertThat((Map<?, ?>) ReflectionTestUtils.getField(finder, "cachedUsersByMember")).hasSize(6);
+    }
+
+    private void gives(UUID giver, UUID receiver, String bookId) {
+        LocalDateTime createdAt = LocalDateTime.now();
+        shelf.add(new UserBookRef(giver, bookId, createdAt));
+        wishlist.add(new UserBookRef(receiver, bookId, createdAt));
+    }
+
+    private void build(int maxCachedUsers) {
+        ShelfBookRepository shelfBookRepository = mock(ShelfBookRepository.class);
+        WishlistRepository wishlistRepository = mock(WishlistRepository.class);
+        when(shelfBookRepository.streamAllRefs()).thenReturn(shelf.stream());
+        when(wishlistRepository.streamAllRefs()).thenReturn(wishlist.stream());
+        SwapMatchIndex index = new SwapMatchIndex(shelfBookRepository, wishlistRepository, mock(ApplicationEventPublisher.class));
+        index.rebuild();
+
+        finder = new TradeCycleFinder(index);
+        ReflectionTestUtils.setField(finder, "maxLength", 4);
+        ReflectionTestUtils.setField(finder, "maxResults", 50);
+        ReflectionTestUtils.setField(finder, "timeBudgetMs", 1_000L);
+        ReflectionTestUtils.setField(finder, "parallelism", 2);
+        ReflectionTestUtils.setField(finder, "maxCachedUsers", maxCachedUsers);
+        ReflectionTestUtils.setField(finder, "partialTtlMs", 30_000L);
+        finder.start();
+    }
+
+    private static Tuple leg(UUID giver, UUID receiver, String bookId) {
+        return Tuple.tuple(giver, receiver, bookId);
+    }
+}
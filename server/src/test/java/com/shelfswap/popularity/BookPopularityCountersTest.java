@@ -0,0 +1,39 @@
+package com.shelfswap.popularity;
+
+import com.shelfswap.PostgresIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookPopularityCountersTest extends PostgresIntegrationTest {
+    @Autowired
+    private BookPopularityCounters bookPopularityCounters;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void reconcilePicksUpChangesThatNeverReachedTheCounters() {
+        String bookId = newBookId();
+        shelve(newUser(), bookId);
+        wish(newUser(), bookId);
+        // Written around this node, as another node or a crash between flushes would leave it.
+        UUID elsewhere = newUser();
+        jdbcTemplate.update("""
+                INSERT INTO shelf_books (id, user_id, book_id, created_at)
+                VALUES (gen_random_uuid(), ?, ?, now())
+                """, elsewhere, bookId);
+        assertThat(bookPopularityCounters.get(bookId).getShelfCount()).isEqualTo(1);
+
+        bookPopularityCounters.reconcile();
+
+        assertThat(bookPopularityCounters.get(bookId).getShelfCount()).isEqualTo(2);
+        assertThat(bookPopularityCounters.get(bookId).getWishlistCount()).isEqualTo(1);
+        bookPopularityCounters.reconcile();
+        assertThat(bookPopularityCounters.get(bookId).getShelfCount()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,57 @@
+package com.shelfswap.search;
+
+import com.shelfswap.dtos.ShelvedBook;
+import com.shelfswap.entities.Book;
+import com.shelfswap.repositories.BookRepository;
+import com.shelfswap.repositories.ShelfBookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BookTitleIndexTest {
+    private BookTitleIndex index;
+
+    @BeforeEach
+    void setUp() {
+        ShelfBookRepository shelfBookRepository = mock(ShelfBookRepository.class);
+        when(shelfBookRepository.streamShelvedBooks()).thenReturn(List.of(
+                shelved("OL1W", "It", "Stephen King", 1),
+                shelved("OL2W", "Italian Folktales", "Italo Calvino", 5),
+                shelved("OL3W", "Up", "Pete Docter", 1),
+                shelved("OL4W", "Harry Potter", "J. K. Rowling", 3),
+                shelved("OL5W", "Little Women", "Louisa May Alcott", 2)
+        ).stream());
+        index = new BookTitleIndex(shelfBookRepository, mock(BookRepository.class));
+        ReflectionTestUtils.setField(index, "minSimilarity", 0.6);
+        ReflectionTestUtils.setField(index, "autocompleteSize", 10);
+        index.init();
+        index.rebuild();
+    }
+
+    @Test
+    void shortQueriesFindTheWholeWord() {
+        assertThat(index.search("It", 0, 10)).extracting(Book::getTitle).containsExactly("It");
+        assertThat(index.search("up", 0, 10)).extracting(Book::getTitle).containsExactly("Up");
+    }
+
+    @Test
+    void shortQueriesWithoutAWholeWordMatchFallBackToWordPrefixes() {
+        assertThat(index.search("ha", 0, 10)).extracting(Book::getTitle).containsExactly("Harry Potter");
+        assertThat(index.search("ha", 1, 10)).isEmpty();
+    }
+
+    @Test
+    void longerQueriesStillMatchOnSharedTrigrams() {
+        assertThat(index.search("litle women", 0, 10)).extracting(Book::getTitle).containsExactly("Little Women");
+    }
+
+    private static ShelvedBook shelved(String id, String title, String author, long shelfCount) {
+        return ShelvedBook.builder().id(id).title(title).author(author).shelfCount(shelfCount).build();
+    }
+}
@@ -0,0 +1,59 @@
+package com.shelfswap.search;
+
+import com.shelfswap.PostgresIntegrationTest;
+import com.shelfswap.dtos.MessageCursor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageSearchIndexTest extends PostgresIntegrationTest {
+    @Autowired
+    private MessageSearchIndex messageSearchIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void findsMessagesWithEveryTermNewestFirst() {
+        UUID userId = newUser();
+        UUID conversationId = UUID.randomUUID();
+        LocalDateTime start = LocalDateTime.of(2026, 1, 1, 12, 0);
+        List<UUID> withBoth = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            UUID messageId = UUID.randomUUID();
+            boolean rare = i % 10 == 0;
+            post(userId, conversationId, messageId, start.plusMinutes(i), rare ? Set.of("swap", "dune") : Set.of("swap"));
+            if (rare) {
+                withBoth.addFirst(messageId);
+            }
+        }
+        // Another user's posting of the same words is never theirs to find.
+        post(newUser(), conversationId, UUID.randomUUID(), start.plusHours(1), Set.of("swap", "dune"));
+
+        assertThat(messageSearchIndex.search(userId, Set.of("swap", "dune"), MessageCursor.LATEST, 10)).isEqualTo(withBoth);
+        assertThat(messageSearchIndex.search(userId, Set.of("dune"), MessageCursor.LATEST, 2)).isEqualTo(withBoth.subList(0, 2));
+        assertThat(messageSearchIndex.search(userId, Set.of("swap", "hyperion"), MessageCursor.LATEST, 10)).isEmpty();
+
+        MessageCursor before = new MessageCursor(start.plusMinutes(20), withBoth.get(2));
+        assertThat(messageSearchIndex.search(userId, Set.of("dune", "swap"), before, 10))
+                .isEqualTo(withBoth.subList(3, withBoth.size()));
+    }
+
+    private void post(UUID userId, UUID conversationId, UUID messageId, LocalDateTime sentAt, Set<String> terms) {
+        for (String term : terms) {
+            jdbcTemplate.update("""
+                    INSERT INTO message_search_terms (user_id, term, sent_at, message_id, conversation_id)
+                    VALUES (?, ?, ?, ?, ?)
+                    """, userId, term, Timestamp.valueOf(sentAt), messageId, conversationId);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.shelfswap.services;
+
+import com.shelfswap.PostgresIntegrationTest;
+import com.shelfswap.exceptions.DuplicateExistsException;
+import com.shelfswap.exceptions.MutuallyExclusiveException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Races adds of one user and book against each other; the unique constraints and the
+ * shelf_wishlist_exclusive trigger must let exactly one of them through.
+ */
+class BookServiceConcurrencyTest extends PostgresIntegrationTest {
+    private static final String ADDED = "added";
+    private static final int THREADS = 8;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentDuplicateAddsStoreOneRow() throws Exception {
+        UUID userId = newUser();
+        String bookId = newBookId();
+        wish(newUser(), bookId);
+
+        List<String> outcomes = race(Collections.nCopies(THREADS, () -> shelve(userId, bookId)));
+
+        assertThat(outcomes).filteredOn(ADDED::equals).hasSize(1);
+        assertThat(outcomes).filteredOn(outcome -> !ADDED.equals(outcome))
+                .containsOnly(DuplicateExistsException.class.getSimpleName());
+        assertThat(rows("shelf_books", userId, bookId)).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentShelfAndWishlistAddsStoreOneRow() throws Exception {
+        for (int round = 0; round < 10; round++) {
+            UUID userId = newUser();
+            String bookId = newBookId();
+
+            List<String> outcomes = race(List.of(() -> shelve(userId, bookId), () -> wish(userId, bookId)));
+
+            assertThat(outcomes).containsExactlyInAnyOrder(ADDED, MutuallyExclusiveException.class.getSimpleName());
+            assertThat(rows("shelf_books", userId, bookId) + rows("wishlist_books", userId, bookId)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void doubleSubmitOfANewBookStoresItOnce() throws Exception {
+        UUID userId = newUser();
+        String bookId = newBookId();
+
+        List<String> outcomes = race(List.of(() -> wish(userId, bookId), () -> wish(userId, bookId)));
+
+        assertThat(outcomes).containsExactlyInAnyOrder(ADDED, DuplicateExistsException.class.getSimpleName());
+        assertThat(rows("wishlist_books", userId, bookId)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM books WHERE id = ?", Integer.class, bookId))
+                .isEqualTo(1);
+    }
+
+    // Starts every add at once and reports each one as ADDED or the simple name of what it threw.
+    private List<String> race(List<Runnable> adds) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(adds.size());
+        try {
+            List<Future<String>> running = new ArrayList<>();
+            for (Runnable add : adds) {
+                running.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        add.run();
+                        return ADDED;
+                    } catch (RuntimeException ex) {
+                        return ex.getClass().getSimpleName();
+                    }
+                }));
+            }
+            start.countDown();
+            List<String> outcomes = new ArrayList<>();
+            for (Future<String> add : running) {
+                outcomes.add(add.get(30, TimeUnit.SECONDS));
+            }
+            return outcomes;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int rows(String table, UUID userId, String bookId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM " + table + " WHERE user_id = ? AND book_id = ?", Integer.class, userId, bookId);
+    }
+}
@@ -0,0 +1,57 @@
+package com.shelfswap.services;
+
+import com.shelfswap.PostgresIntegrationTest;
+import com.shelfswap.dtos.FeedPage;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FeedServiceStatementCountTest extends PostgresIntegrationTest {
+    // The ranked page (1), the partners themselves (1) and both directions of matched books (2).
+    private static final long MAX_STATEMENTS_PER_FEED = 4;
+
+    @Autowired
+    private FeedService feedService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void feedStatementCountDoesNotGrowWithPartners() {
+        long withFewPartners = statementsForFeedWith(2);
+        long withManyPartners = statementsForFeedWith(12);
+
+        assertThat(withManyPartners).isEqualTo(withFewPartners);
+        assertThat(withManyPartners).isLessThanOrEqualTo(MAX_STATEMENTS_PER_FEED);
+    }
+
+    private long statementsForFeedWith(int partners) {
+        UUID me = newUser();
+        for (int i = 0; i < partners; i++) {
+            UUID partner = newUser();
+            String theirs = newBookId();
+            String mine = newBookId();
+            shelve(partner, theirs);
+            wish(me, theirs);
+            shelve(me, mine);
+            wish(partner, mine);
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        FeedPage page = feedService.getFeedMatches(me, null, FeedService.MAX_FEED_LIMIT);
+        long statements = statistics.getPrepareStatementCount();
+
+        assertThat(page.getItems()).hasSize(partners).allSatisfy(item -> {
+            assertThat(item.getTheirBooks()).hasSize(1);
+            assertThat(item.getMyBooks()).hasSize(1);
+        });
+        return statements;
+    }
+}
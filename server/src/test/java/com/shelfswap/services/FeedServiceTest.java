@@ -0,0 +1,143 @@
+package com.shelfswap.services;
+
+import com.shelfswap.PostgresIntegrationTest;
+import com.shelfswap.dtos.FeedItem;
+import com.shelfswap.dtos.FeedPage;
+import com.shelfswap.entities.FeedSignalWeight;
+import com.shelfswap.entities.UserMatch;
+import com.shelfswap.repositories.FeedSignalWeightRepository;
+import com.shelfswap.repositories.UserMatchRepository;
+import com.shelfswap.scoring.FeedScoringEngine;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FeedServiceTest extends PostgresIntegrationTest {
+    @Autowired
+    private FeedService feedService;
+
+    @Autowired
+    private FeedScoringEngine feedScoringEngine;
+
+    @Autowired
+    private FeedSignalWeightRepository feedSignalWeightRepository;
+
+    @Autowired
+    private UserMatchRepository userMatchRepository;
+
+    @Test
+    void laterPagesKeepTheWeightsTheFirstPageWasScoredWith() {
+        UUID me = newUser();
+        // Created strongest first, so recency alone would rank them the other way round.
+        UUID strongest = partnerSharing(me, 3);
+        UUID middle = partnerSharing(me, 2);
+        UUID weakest = partnerSharing(me, 1);
+
+        List<UUID> seen = new ArrayList<>();
+        FeedPage page = feedService.getFeedMatches(me, null, 1);
+        page.getItems().forEach(item -> seen.add(item.getUser().getId()));
+        try {
+            feedSignalWeightRepository.saveAll(List.of(
+                    FeedSignalWeight.builder().signal("overlap").weight(0).build(),
+                    FeedSignalWeight.builder().signal("recency").weight(1).build()));
+            feedScoringEngine.refreshWeights();
+            while (page.getNextCursor() != null) {
+                page = feedService.getFeedMatches(me, page.getNextCursor(), 1);
+                page.getItems().stream().map(FeedItem::getUser).forEach(user -> seen.add(user.getId()));
+            }
+        } finally {
+            feedSignalWeightRepository.deleteAll();
+            feedScoringEngine.refreshWeights();
+        }
+
+        assertThat(seen).containsExactly(strongest, middle, weakest);
+    }
+
+    @Test
+    void pagingReachesEveryPartnerOnceInScoreOrder() {
+        UUID me = newUser();
+        List<UUID> expected = new ArrayList<>();
+        for (int books = 4; books >= 1; books--) {
+            expected.add(partnerSharing(me, books));
+            expected.add(partnerSharing(me, books));
+        }
+
+        List<UUID> seen = new ArrayList<>();
+        FeedPage page = feedService.getFeedMatches(me, null, 3);
+        page.getItems().forEach(item -> seen.add(item.getUser().getId()));
+        while (page.getNextCursor() != null) {
+            page = feedService.getFeedMatches(me, page.getNextCursor(), 3);
+            page.getItems().forEach(item -> seen.add(item.getUser().getId()));
+        }
+
+        assertThat(seen).containsExactlyInAnyOrderElementsOf(expected).doesNotHaveDuplicates();
+        for (int i = 0; i < seen.size(); i += 2) {
+            // Each pair of partners shares the same number of books, so only their order within the pair is open.
+            assertThat(seen.subList(i, i + 2)).containsExactlyInAnyOrderElementsOf(expected.subList(i, i + 2));
+        }
+    }
+
+    @Test
+    void cursorsWithChangedWeightsAreRejected() {
+        UUID me = newUser();
+        partnerSharing(me, 2);
+        partnerSharing(me, 1);
+        String cursor = feedService.getFeedMatches(me, null, 1).getNextCursor();
+        int separator = cursor.indexOf('.');
+        String payload = new String(Base64.getUrlDecoder().decode(cursor.substring(0, separator)), StandardCharsets.UTF_8);
+        String forged = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(payload.replace("overlap=1.0", "overlap=0.0").getBytes(StandardCharsets.UTF_8))
+                + cursor.substring(separator);
+        assertThat(forged).isNotEqualTo(cursor);
+
+        assertThatThrownBy(() -> feedService.getFeedMatches(me, forged, 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid feed cursor");
+    }
+
+    @Test
+    void recencyOnlyMovesWithTheEntriesAPairMatchesOn() {
+        UUID me = newUser();
+        UUID partner = partnerSharing(me, 1);
+        LocalDateTime matchedAt = lastMatchedAt(me);
+        assertThat(matchedAt).isNotNull();
+
+        shelve(partner, newBookId());
+        assertThat(lastMatchedAt(me)).isEqualTo(matchedAt);
+
+        String theirs = newBookId();
+        shelve(partner, theirs);
+        wish(me, theirs);
+        assertThat(lastMatchedAt(me)).isAfter(matchedAt);
+    }
+
+    private UUID partnerSharing(UUID me, int books) {
+        UUID partner = newUser();
+        for (int i = 0; i < books; i++) {
+            String theirs = newBookId();
+            String mine = newBookId();
+            shelve(partner, theirs);
+            wish(me, theirs);
+            shelve(me, mine);
+            wish(partner, mine);
+        }
+        return partner;
+    }
+
+    private LocalDateTime lastMatchedAt(UUID userId) {
+        return userMatchRepository.findByUserId(userId)
+                .stream()
+                .map(UserMatch::getLastMatchedAt)
+                .findFirst()
+                .orElse(null);
+    }
+}
@@ -0,0 +1,62 @@
+package com.shelfswap.services;
+
+import com.shelfswap.dtos.FeedItem;
+import com.shelfswap.dtos.UserDTO;
+import com.shelfswap.events.MatchChangeEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FeedStreamServiceTest {
+    private final FeedService feedService = mock(FeedService.class);
+    private final FeedStreamService feedStreamService = new FeedStreamService(feedService);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(feedStreamService, "bufferSize", 8);
+        ReflectionTestUtils.setField(feedStreamService, "heartbeatMs", 60_000L);
+        ReflectionTestUtils.setField(feedStreamService, "timeoutMs", 60_000L);
+        ReflectionTestUtils.setField(feedStreamService, "deltaThreads", 1);
+        feedStreamService.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        feedStreamService.stop();
+    }
+
+    @Test
+    void feedItemsAreBuiltOffThePublishingThread() throws Exception {
+        UUID subscriber = UUID.randomUUID();
+        UUID partner = UUID.randomUUID();
+        feedStreamService.subscribe(subscriber);
+        CompletableFuture<Thread> builtOn = new CompletableFuture<>();
+        when(feedService.getFeedItem(subscriber, partner)).thenAnswer(invocation -> {
+            builtOn.complete(Thread.currentThread());
+            return Optional.of(FeedItem.builder()
+                    .user(UserDTO.builder().id(partner).build())
+                    .theirBooks(List.of())
+                    .myBooks(List.of())
+                    .build());
+        });
+
+        feedStreamService.onMatchChange(new MatchChangeEvent(partner, subscriber, true));
+
+        assertThat(builtOn.get(5, TimeUnit.SECONDS)).isNotSameAs(Thread.currentThread());
+        // Only the side with a connection open gets an item built.
+        verify(feedService, never()).getFeedItem(partner, subscriber);
+    }
+}
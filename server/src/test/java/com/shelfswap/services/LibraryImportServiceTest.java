@@ -0,0 +1,146 @@
+package com.shelfswap.services;
+
+import com.shelfswap.PostgresIntegrationTest;
+import com.shelfswap.dtos.ImportProgress;
+import com.shelfswap.entities.UserMatch;
+import com.shelfswap.repositories.UserMatchRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LibraryImportServiceTest extends PostgresIntegrationTest {
+    @Autowired
+    private LibraryImportService libraryImportService;
+
+    @Autowired
+    private UserMatchService userMatchService;
+
+    @Autowired
+    private UserMatchRepository userMatchRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentAddToTheOtherListOnlySkipsThatRow() throws Exception {
+        UUID userId = newUser();
+        String wished = newBookId();
+        String other = newBookId();
+        for (String bookId : new String[]{wished, other}) {
+            jdbcTemplate.update("INSERT INTO books (id, title, author, created_at) VALUES (?, 'Title', 'Author', now())", bookId);
+        }
+        CountDownLatch added = new CountDownLatch(1);
+
+        // The wishlist add stays uncommitted while the import's chunk checks the wishlist and inserts.
+        CompletableFuture<Void> wish = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+            wish(userId, wished);
+            added.countDown();
+            sleep(1000);
+        }));
+        assertThat(added.await(10, TimeUnit.SECONDS)).isTrue();
+        String csv = "Title,Author,Open Library ID,Exclusive Shelf\n"
+                + "Wished,Author," + wished + ",read\n"
+                + "Other,Author," + other + ",read\n";
+        libraryImportService.startImport(userId, upload(csv));
+        wish.get(10, TimeUnit.SECONDS);
+
+        ImportProgress progress = awaitDone(userId);
+        assertThat(progress.getImported()).isEqualTo(1);
+        assertThat(progress.getSkipped()).isEqualTo(1);
+        assertThat(progress.getFailed()).isZero();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM shelf_books WHERE user_id = ? AND book_id = ?", Integer.class, userId, other))
+                .isEqualTo(1);
+    }
+
+    @Test
+    void chunkCountsItsMatchesLikeSingleAdds() throws Exception {
+        UUID me = newUser();
+        UUID partner = newUser();
+        String first = newBookId();
+        String second = newBookId();
+        String theirs = newBookId();
+        for (String bookId : new String[]{first, second}) {
+            jdbcTemplate.update("INSERT INTO books (id, title, author, created_at) VALUES (?, 'Title', 'Author', now())", bookId);
+            wish(partner, bookId);
+        }
+        shelve(partner, theirs);
+        String csv = "Title,Author,Open Library ID,Exclusive Shelf\n"
+                + "First,Author," + first + ",read\n"
+                + "Second,Author," + second + ",read\n"
+                + "Theirs,Author," + theirs + ",to-read\n";
+        Path upload = upload(csv);
+
+        libraryImportService.startImport(me, upload);
+
+        assertThat(awaitDone(me).getImported()).isEqualTo(3);
+        assertThat(userMatchRepository.findByUserId(me))
+                .singleElement()
+                .extracting(UserMatch::getTheyOwnCount, UserMatch::getIOwnCount)
+                .containsExactly(1, 2);
+        assertThat(userMatchRepository.findByUserId(partner))
+                .singleElement()
+                .extracting(UserMatch::getTheyOwnCount, UserMatch::getIOwnCount)
+                .containsExactly(2, 1);
+        assertThat(userMatchService.repairUser(me)).isFalse();
+        assertThat(upload).doesNotExist();
+    }
+
+    @Test
+    void finishedJobsAreEvictedAfterTheirTtl() throws Exception {
+        UUID userId = newUser();
+        libraryImportService.startImport(userId, upload("Title,Author\n"));
+        awaitDone(userId);
+
+        libraryImportService.evictFinishedJobs();
+        assertThat(libraryImportService.getProgress(userId)).isPresent();
+
+        ReflectionTestUtils.setField(libraryImportService, "jobTtlMs", -1L);
+        try {
+            libraryImportService.evictFinishedJobs();
+        } finally {
+            ReflectionTestUtils.setField(libraryImportService, "jobTtlMs", 3_600_000L);
+        }
+        assertThat(libraryImportService.getProgress(userId)).isEmpty();
+    }
+
+    private static Path upload(String csv) throws IOException {
+        Path file = Files.createTempFile("import-test-", ".csv");
+        Files.writeString(file, csv, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private ImportProgress awaitDone(UUID userId) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        ImportProgress progress;
+        while (!(progress = libraryImportService.getProgress(userId).orElseThrow()).isDone()
+                && System.currentTimeMillis() < deadline) {
+            sleep(50);
+        }
+        return progress;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
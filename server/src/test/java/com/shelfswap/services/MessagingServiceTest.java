@@ -0,0 +1,99 @@
+package com.shelfswap.services;
+
+import com.shelfswap.PostgresIntegrationTest;
+import com.shelfswap.dtos.ConversationDTO;
+import com.shelfswap.dtos.MessageDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class MessagingServiceTest extends PostgresIntegrationTest {
+    @Autowired
+    private MessagingService messagingService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void initialMessageIsUnreadUntilTheRecipientReadsIt() {
+        UUID initiator = newUser();
+        UUID recipient = newUser();
+        makeMutual(initiator, recipient);
+
+        ConversationDTO conversation = messagingService.startConversation(initiator, recipient, "Swap?");
+
+        assertThat(conversation.getLastMessage()).isEqualTo("Swap?");
+        assertThat(messagingService.getUnreadCounts(recipient).getUnreadMessages()).isEqualTo(1);
+        messagingService.markMessagesAsRead(conversation.getId(), recipient);
+        assertThat(messages(conversation.getId(), initiator)).singleElement().satisfies(message -> {
+            assertThat(message.isRead()).isTrue();
+            assertThat(message.getSentAt()).isEqualTo(conversation.getLastMessageAt());
+        });
+        assertThat(messagingService.getUnreadCounts(recipient).getUnreadMessages()).isZero();
+    }
+
+    @Test
+    void messageCommittedLateIsOrderedAfterTheReadWatermark() throws Exception {
+        UUID initiator = newUser();
+        UUID recipient = newUser();
+        makeMutual(initiator, recipient);
+        UUID conversationId = messagingService.startConversation(initiator, recipient, "Swap?").getId();
+        CountDownLatch sent = new CountDownLatch(1);
+
+        // The recipient's reply stays uncommitted while the initiator sends and reads.
+        CompletableFuture<MessageDTO> reply = CompletableFuture.supplyAsync(() -> transactionTemplate.execute(status -> {
+            MessageDTO message = messagingService.sendMessage(conversationId, recipient, "Sure");
+            sent.countDown();
+            sleep(500);
+            return message;
+        }));
+        assertThat(sent.await(10, TimeUnit.SECONDS)).isTrue();
+        MessageDTO followUp = messagingService.sendMessage(conversationId, initiator, "Great");
+        MessageDTO committedFirst = reply.get(10, TimeUnit.SECONDS);
+        messagingService.markMessagesAsRead(conversationId, initiator);
+        MessageDTO afterRead = messagingService.sendMessage(conversationId, recipient, "When?");
+
+        assertThat(followUp.getSentAt()).isAfter(committedFirst.getSentAt());
+        assertThat(messages(conversationId, recipient))
+                .extracting(MessageDTO::getContent, MessageDTO::isRead)
+                .containsExactly(
+                        tuple("When?", false),
+                        tuple("Great", false),
+                        tuple("Sure", true),
+                        tuple("Swap?", false));
+        assertThat(afterRead.getSentAt()).isAfter(followUp.getSentAt());
+        assertThat(messagingService.getUnreadCounts(initiator).getUnreadMessages()).isEqualTo(1);
+    }
+
+    private void makeMutual(UUID user, UUID other) {
+        String offered = newBookId();
+        String wanted = newBookId();
+        shelve(user, offered);
+        wish(other, offered);
+        shelve(other, wanted);
+        wish(user, wanted);
+    }
+
+    // Inside a transaction, as open-in-view provides in a request, so the senders can be loaded.
+    private List<MessageDTO> messages(UUID conversationId, UUID userId) {
+        return transactionTemplate.execute(status ->
+                messagingService.getConversationMessages(conversationId, userId, null, null, null).getItems());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.shelfswap.services;
+
+import com.shelfswap.PostgresIntegrationTest;
+import com.shelfswap.entities.UserMatch;
+import com.shelfswap.repositories.UserMatchRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserMatchServiceTest extends PostgresIntegrationTest {
+    @Autowired
+    private UserMatchService userMatchService;
+
+    @Autowired
+    private UserMatchRepository userMatchRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void overlappingShelfAndWishlistAddsOfOneBookCountThePair() throws Exception {
+        UUID owner = newUser();
+        UUID wisher = newUser();
+        String bookId = newBookId();
+        // Committed up front: two transactions inserting the same new book would serialise on it.
+        jdbcTemplate.update("INSERT INTO books (id, title, author, created_at) VALUES (?, 'Title', 'Author', now())", bookId);
+        CountDownLatch shelved = new CountDownLatch(1);
+
+        // The shelf add stays uncommitted while the wishlist add runs its delta queries.
+        CompletableFuture<Void> shelf = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+            shelve(owner, bookId);
+            shelved.countDown();
+            sleep(500);
+        }));
+        assertThat(shelved.await(10, TimeUnit.SECONDS)).isTrue();
+        wish(wisher, bookId);
+        shelf.get(10, TimeUnit.SECONDS);
+
+        assertThat(userMatchRepository.findByUserId(wisher))
+                .singleElement()
+                .satisfies(match -> {
+                    assertThat(match.getPartnerId()).isEqualTo(owner);
+                    assertThat(match.getTheyOwnCount()).isEqualTo(1);
+                });
+        assertThat(userMatchRepository.findByUserId(owner))
+                .singleElement()
+                .satisfies(match -> assertThat(match.getIOwnCount()).isEqualTo(1));
+        assertThat(userMatchService.repairUser(wisher)).isFalse();
+    }
+
+    @Test
+    void repairFixesDriftedCountsOfAnExistingPartner() {
+        UUID me = newUser();
+        UUID partner = newUser();
+        String theirs = newBookId();
+        String mine = newBookId();
+        shelve(partner, theirs);
+        wish(me, theirs);
+        shelve(me, mine);
+        wish(partner, mine);
+        assertThat(userMatchService.repairUser(me)).isFalse();
+
+        // Same partner set, wrong count: a partner-set comparison would not notice.
+        jdbcTemplate.update("UPDATE user_matches SET they_own_count = 3 WHERE user_id = ? AND partner_id = ?", me, partner);
+
+        assertThat(userMatchService.repairUser(me)).isTrue();
+        assertThat(userMatchRepository.findByUserId(me))
+                .singleElement()
+                .extracting(UserMatch::getTheyOwnCount, UserMatch::getIOwnCount)
+                .containsExactly(1, 1);
+        assertThat(userMatchService.repairUser(me)).isFalse();
+    }
+
+    @Test
+    void negativeDriftIsKeptForRepair() {
+        UUID me = newUser();
+        UUID partner = newUser();
+        String theirs = newBookId();
+        shelve(partner, theirs);
+        wish(me, theirs);
+        jdbcTemplate.update("UPDATE user_matches SET they_own_count = 0 WHERE user_id = ? AND partner_id = ?", me, partner);
+
+        bookService.removeFromShelfOrWishlist(theirs, partner, true);
+
+        assertThat(userMatchRepository.findByUserId(me))
+                .singleElement()
+                .satisfies(match -> assertThat(match.getTheyOwnCount()).isEqualTo(-1));
+        assertThat(userMatchService.repairUser(me)).isTrue();
+        assertThat(userMatchRepository.findByUserId(me)).isEmpty();
+    }
+
+    @Test
+    void removalForAPairWithoutARowInsertsNothing() {
+        UUID me = newUser();
+        UUID partner = newUser();
+        String theirs = newBookId();
+        shelve(partner, theirs);
+        wish(me, theirs);
+        jdbcTemplate.update("DELETE FROM user_matches WHERE user_id IN (?, ?)", me, partner);
+
+        bookService.removeFromShelfOrWishlist(theirs, partner, true);
+
+        assertThat(userMatchRepository.findByUserId(me)).isEmpty();
+        assertThat(userMatchRepository.findByUserId(partner)).isEmpty();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}